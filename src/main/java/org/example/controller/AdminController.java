@@ -0,0 +1,124 @@
+package org.example.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.dto.ErrorResponse;
+import org.example.dto.StatsRebuildResult;
+import org.example.service.DonationRollupService;
+import org.example.service.DonationStatsService;
+import org.example.service.GeneralFundCounterService;
+import org.example.service.JwtService;
+import org.example.service.OutboxDispatcherService;
+import org.example.service.PaymentProcessingService;
+import org.example.service.RecurringPartitionService;
+import org.example.service.ResponseCacheService;
+import org.example.service.UserService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/admin")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "http://localhost:3000")
+public class AdminController {
+
+    private final DonationStatsService donationStatsService;
+    private final DonationRollupService donationRollupService;
+    private final ResponseCacheService responseCacheService;
+    private final GeneralFundCounterService generalFundCounterService;
+    private final OutboxDispatcherService outboxDispatcherService;
+    private final PaymentProcessingService paymentProcessingService;
+    private final RecurringPartitionService recurringPartitionService;
+    private final UserService userService;
+    private final JwtService jwtService;
+
+    @GetMapping("/stats/verify")
+    public ResponseEntity<StatsRebuildResult> verifyStats(@RequestHeader("Authorization") String authHeader) {
+        requireAdmin(authHeader);
+        log.info("Получен запрос на проверку таблиц статистики");
+        return ResponseEntity.ok(donationStatsService.verify());
+    }
+
+    @PostMapping("/stats/rebuild")
+    public ResponseEntity<StatsRebuildResult> rebuildStats(@RequestHeader("Authorization") String authHeader) {
+        requireAdmin(authHeader);
+        log.info("Получен запрос на пересчет таблиц статистики");
+        return ResponseEntity.ok(donationStatsService.rebuild());
+    }
+
+    @PostMapping("/rollups/rebuild")
+    public ResponseEntity<Map<String, Integer>> rebuildRollups(@RequestHeader("Authorization") String authHeader) {
+        requireAdmin(authHeader);
+        log.info("Получен запрос на пересчет агрегатов пожертвований");
+        return ResponseEntity.ok(Map.of("buckets", donationRollupService.rebuild()));
+    }
+
+    @GetMapping("/cache/stats")
+    public ResponseEntity<Map<String, Object>> getCacheStats(@RequestHeader("Authorization") String authHeader) {
+        requireAdmin(authHeader);
+        return ResponseEntity.ok(responseCacheService.getStats());
+    }
+
+    @GetMapping("/general-funds/pending")
+    public ResponseEntity<Map<Long, BigDecimal>> getPendingGeneralFundAmounts(
+            @RequestHeader("Authorization") String authHeader) {
+        requireAdmin(authHeader);
+        return ResponseEntity.ok(generalFundCounterService.getPendingAmounts());
+    }
+
+    @GetMapping("/outbox")
+    public ResponseEntity<Map<String, Long>> getOutboxStatus(@RequestHeader("Authorization") String authHeader) {
+        requireAdmin(authHeader);
+        return ResponseEntity.ok(outboxDispatcherService.getStatus());
+    }
+
+    @PostMapping("/outbox/retry-failed")
+    public ResponseEntity<Map<String, Integer>> retryFailedOutboxEvents(@RequestHeader("Authorization") String authHeader) {
+        requireAdmin(authHeader);
+        log.info("Получен запрос на повтор исходящих событий с ошибками");
+        return ResponseEntity.ok(Map.of("reset", outboxDispatcherService.retryFailed()));
+    }
+
+    @GetMapping("/payments")
+    public ResponseEntity<Map<String, Object>> getPaymentStatus(@RequestHeader("Authorization") String authHeader) {
+        requireAdmin(authHeader);
+        return ResponseEntity.ok(paymentProcessingService.getStatus());
+    }
+
+    @GetMapping("/recurring/partitions")
+    public ResponseEntity<Map<String, Object>> getRecurringPartitions(@RequestHeader("Authorization") String authHeader) {
+        requireAdmin(authHeader);
+        return ResponseEntity.ok(recurringPartitionService.getStatus());
+    }
+
+    @ExceptionHandler(RuntimeException.class)
+    public ResponseEntity<ErrorResponse> handleRuntimeException(RuntimeException e) {
+        log.error("Ошибка при обработке запроса: {}", e.getMessage());
+        return ResponseEntity
+                .badRequest()
+                .body(new ErrorResponse(e.getMessage()));
+    }
+
+    private void requireAdmin(String authHeader) {
+        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+            log.error("Отсутствует или неверный формат токена авторизации");
+            throw new RuntimeException("Unauthorized");
+        }
+
+        String token = authHeader.substring(7);
+        if (!jwtService.isTokenValid(token)) {
+            log.error("Невалидный JWT токен");
+            throw new RuntimeException("Invalid token");
+        }
+
+        Long userId = jwtService.extractUserId(token);
+        if (!userService.isUserAdmin(userId)) {
+            log.error("Пользователь {} не является администратором", userId);
+            throw new RuntimeException("Access denied");
+        }
+    }
+}
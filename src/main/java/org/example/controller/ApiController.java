@@ -3,37 +3,70 @@ package org.example.controller;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.example.dto.AuthResponse;
+import org.example.dto.CharityFacets;
 import org.example.dto.CharityRequest;
 import org.example.dto.CharityResponse;
+import org.example.dto.CharitySummary;
+import org.example.dto.CursorPage;
+import org.example.dto.DonationBatchResponse;
+import org.example.dto.DonationHistoryItem;
 import org.example.dto.DonationRequest;
 import org.example.dto.ErrorResponse;
 import org.example.dto.LoginRequest;
+import org.example.dto.OffsetPage;
+import org.example.dto.RecurringForecast;
 import org.example.dto.RegisterRequest;
+import org.example.dto.RollupSeries;
+import org.example.exception.DuplicateRequestException;
 import org.example.model.Charity;
 import org.example.model.Donation;
+import org.example.model.DonationRollup;
 import org.example.model.Document;
+import org.example.service.CharityFacetService;
 import org.example.service.CharityService;
+import org.example.service.DonationBatchService;
+import org.example.service.DonationExportService;
+import org.example.service.DonationIdempotencyService;
+import org.example.service.DonationRollupService;
 import org.example.service.DonationService;
 import org.example.service.JwtService;
+import org.example.service.RecurringForecastService;
+import org.example.service.ResourceVersionService;
 import org.example.service.UserService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDateTime;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Slf4j
 @RestController
 @RequestMapping("/api")
 @RequiredArgsConstructor
-@CrossOrigin(origins = "http://localhost:3000")
+@CrossOrigin(origins = "http://localhost:3000", exposedHeaders = "ETag")
 public class ApiController {
 
     private final UserService userService;
     private final CharityService charityService;
+    private final CharityFacetService charityFacetService;
     private final DonationService donationService;
+    private final DonationBatchService donationBatchService;
+    private final DonationIdempotencyService donationIdempotencyService;
+    private final DonationExportService donationExportService;
+    private final DonationRollupService donationRollupService;
+    private final RecurringForecastService recurringForecastService;
     private final JwtService jwtService;
+    private final ResourceVersionService resourceVersionService;
 
     // Аутентификация
     @PostMapping("/auth/register")
@@ -55,10 +88,56 @@ public class ApiController {
         return ResponseEntity.ok(charityService.getAllCharities());
     }
 
+    @GetMapping("/charities/{id}/rollups")
+    public ResponseEntity<RollupSeries> getCharityRollups(
+            @PathVariable Long id,
+            @RequestParam(value = "granularity", defaultValue = "day") String granularity,
+            @RequestParam(value = "from", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(value = "to", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        log.debug("Получен запрос на агрегаты пожертвований организации {} ({})", id, granularity);
+        return ResponseEntity.ok(donationRollupService.getSeries(
+                DonationRollup.Scope.CHARITY, id, granularity, from, to));
+    }
+
+    // Ожидаемые поступления по подпискам на активные кампании организации на months месяцев вперед
+    @GetMapping("/charities/{id}/recurring-forecast")
+    public ResponseEntity<RecurringForecast> getCharityRecurringForecast(
+            @PathVariable Long id,
+            @RequestParam(value = "months", defaultValue = "12") int months) {
+        log.debug("Получен запрос на прогноз регулярных поступлений организации {} на {} мес.", id, months);
+        return ResponseEntity.ok(recurringForecastService.getCharityForecast(id, months));
+    }
+
+    @GetMapping("/charities/page")
+    public ResponseEntity<CursorPage<CharitySummary>> getCharitiesPage(
+            @RequestParam(value = "after", required = false) Long after,
+            @RequestParam(value = "limit", defaultValue = "20") int limit) {
+        log.debug("Получен запрос на страницу благотворительных организаций после {}", after);
+        return ResponseEntity.ok(charityService.getCharitySummaries(after, limit));
+    }
+
+    @GetMapping("/charities/facets")
+    public ResponseEntity<CharityFacets> getCharityFacets(
+            @RequestParam(value = "categories", required = false) Set<String> categories,
+            @RequestParam(value = "mode", defaultValue = "AND") String mode,
+            @RequestParam(value = "limit", defaultValue = "20") int limit) {
+        log.debug("Получен запрос на фасеты организаций: категории {}, режим {}", categories, mode);
+        return ResponseEntity.ok(charityFacetService.getFacets(
+                categories != null ? categories : Collections.emptySet(), mode, limit));
+    }
+
     @GetMapping("/charities/{id}")
-    public ResponseEntity<CharityResponse> getCharityById(@PathVariable Long id) {
+    public ResponseEntity<CharityResponse> getCharityById(@PathVariable Long id, WebRequest webRequest) {
         log.debug("Получен запрос на получение благотворительной организации: {}", id);
-        return ResponseEntity.ok(charityService.getCharityById(id));
+        // ETag читается до тела, а кэш сбрасывается раньше подъема версии (см. ResponseCacheService),
+        // поэтому при гонке клиент получит более новое тело со старым ETag и просто перепроверит его
+        String etag = resourceVersionService.getCharityEtag(id);
+        if (webRequest.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok().eTag(etag).body(charityService.getCharityById(id));
     }
 
     @PostMapping("/charities")
@@ -138,10 +217,20 @@ public class ApiController {
     @PostMapping("/donations")
     public ResponseEntity<Donation> createDonation(
             @RequestBody DonationRequest request,
-            @RequestHeader("Authorization") String authHeader) {
+            @RequestHeader("Authorization") String authHeader,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
         Long userId = validateTokenAndGetUserId(authHeader);
         log.info("Получен запрос на создание пожертвования от пользователя: {}", userId);
-        return ResponseEntity.ok(donationService.createDonation(request, userId));
+        return ResponseEntity.ok(donationIdempotencyService.createDonation(request, userId, idempotencyKey));
+    }
+
+    @PostMapping("/donations/batch")
+    public ResponseEntity<DonationBatchResponse> createDonations(
+            @RequestBody List<DonationRequest> requests,
+            @RequestHeader("Authorization") String authHeader) {
+        Long userId = validateTokenAndGetUserId(authHeader);
+        log.info("Получен пакет пожертвований от пользователя {}: {} шт.", userId, requests.size());
+        return ResponseEntity.ok(donationBatchService.createDonations(requests, userId));
     }
 
     @GetMapping("/donations/user")
@@ -152,6 +241,17 @@ public class ApiController {
         return ResponseEntity.ok(donationService.getUserDonations(userId));
     }
     
+    @GetMapping("/donations/user/page")
+    public ResponseEntity<OffsetPage<DonationHistoryItem>> getUserDonationsPage(
+            @RequestParam(value = "page", defaultValue = "0") int page,
+            @RequestParam(value = "size", defaultValue = "20") int size,
+            @RequestParam(value = "direction", defaultValue = "desc") String direction,
+            @RequestHeader("Authorization") String authHeader) {
+        Long userId = validateTokenAndGetUserId(authHeader);
+        log.debug("Получен запрос на страницу {} пожертвований пользователя: {}", page, userId);
+        return ResponseEntity.ok(donationService.getUserDonationHistory(userId, page, size, direction));
+    }
+
     @DeleteMapping("/charities/{id}")
     public ResponseEntity<Void> deleteCharity(
             @PathVariable Long id,
@@ -168,6 +268,39 @@ public class ApiController {
         return ResponseEntity.ok(donationService.getFundraisingDonations(fundraisingId));
     }
 
+    @GetMapping("/donations/fundraising/{fundraisingId}/page")
+    public ResponseEntity<OffsetPage<DonationHistoryItem>> getFundraisingDonationsPage(
+            @PathVariable Long fundraisingId,
+            @RequestParam(value = "page", defaultValue = "0") int page,
+            @RequestParam(value = "size", defaultValue = "20") int size,
+            @RequestParam(value = "direction", defaultValue = "desc") String direction) {
+        log.debug("Получен запрос на страницу {} пожертвований кампании: {}", page, fundraisingId);
+        return ResponseEntity.ok(donationService.getFundraisingDonationHistory(fundraisingId, page, size, direction));
+    }
+
+    // Выгрузка донорских списков для создателя фонда или кампании (csv или ndjson)
+    @GetMapping("/donations/fundraising/{fundraisingId}/export")
+    public ResponseEntity<StreamingResponseBody> exportFundraisingDonations(
+            @PathVariable Long fundraisingId,
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestHeader("Authorization") String authHeader) {
+        Long userId = validateTokenAndGetUserId(authHeader);
+        DonationExportService.Format exportFormat = DonationExportService.Format.parse(format);
+        StreamingResponseBody body = donationExportService.exportFundraising(fundraisingId, userId, exportFormat);
+        return exportResponse(body, exportFormat, "fundraising-" + fundraisingId + "-donations");
+    }
+
+    @GetMapping("/donations/charity/{charityId}/export")
+    public ResponseEntity<StreamingResponseBody> exportCharityDonations(
+            @PathVariable Long charityId,
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestHeader("Authorization") String authHeader) {
+        Long userId = validateTokenAndGetUserId(authHeader);
+        DonationExportService.Format exportFormat = DonationExportService.Format.parse(format);
+        StreamingResponseBody body = donationExportService.exportCharity(charityId, userId, exportFormat);
+        return exportResponse(body, exportFormat, "charity-" + charityId + "-donations");
+    }
+
     @GetMapping("/auth/check-role")
     public ResponseEntity<?> checkRole(@RequestHeader("Authorization") String authHeader) {
         Long userId = validateTokenAndGetUserId(authHeader);
@@ -176,6 +309,14 @@ public class ApiController {
     }
 
     // Обработка ошибок
+    @ExceptionHandler(DuplicateRequestException.class)
+    public ResponseEntity<ErrorResponse> handleDuplicateRequest(DuplicateRequestException e) {
+        log.warn("Повторный запрос: {}", e.getMessage());
+        return ResponseEntity
+                .status(HttpStatus.CONFLICT)
+                .body(new ErrorResponse(e.getMessage()));
+    }
+
     @ExceptionHandler(RuntimeException.class)
     public ResponseEntity<ErrorResponse> handleRuntimeException(RuntimeException e) {
         log.error("Ошибка при обработке запроса: {}", e.getMessage());
@@ -184,6 +325,15 @@ public class ApiController {
                 .body(new ErrorResponse(e.getMessage()));
     }
 
+    private ResponseEntity<StreamingResponseBody> exportResponse(
+            StreamingResponseBody body, DonationExportService.Format format, String fileName) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(format.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"" + fileName + "." + format.getExtension() + "\"")
+                .body(body);
+    }
+
     // Вспомогательный метод для валидации токена
     private Long validateTokenAndGetUserId(String authHeader) {
         if (authHeader == null || !authHeader.startsWith("Bearer ")) {
@@ -3,23 +3,46 @@ package org.example.controller;
 import javax.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.example.dto.CursorPage;
+import org.example.dto.FundraisingDetailsResponse;
 import org.example.dto.FundraisingRequest;
+import org.example.dto.FundraisingSummary;
+import org.example.dto.RecurringForecast;
+import org.example.dto.RollupSeries;
+import org.example.model.DonationRollup;
 import org.example.model.Fundraising;
+import org.example.model.RefundJob;
+import org.example.service.DonationFeedService;
+import org.example.service.DonationRollupService;
 import org.example.service.FundraisingService;
 import org.example.service.JwtService;
+import org.example.service.RecurringForecastService;
+import org.example.service.RefundJobService;
+import org.example.service.ResourceVersionService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Slf4j
 @RestController
 @RequestMapping("/api/fundraisings")
 @RequiredArgsConstructor
-@CrossOrigin(origins = "http://localhost:3000")
+@CrossOrigin(origins = "http://localhost:3000", exposedHeaders = "ETag")
 public class FundraisingController {
 
     private final FundraisingService fundraisingService;
     private final JwtService jwtService;
+    private final ResourceVersionService resourceVersionService;
+    private final DonationRollupService donationRollupService;
+    private final DonationFeedService donationFeedService;
+    private final RefundJobService refundJobService;
+    private final RecurringForecastService recurringForecastService;
 
     @PostMapping
     public ResponseEntity<Fundraising> createFundraising(
@@ -37,10 +60,51 @@ public class FundraisingController {
         return ResponseEntity.ok(fundraisingService.getAllFundraisings());
     }
 
+    // Живая лента кампании: события "update" с прогрессом и новыми пожертвованиями
+    @GetMapping(value = "/{id}/feed", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribeToFundraisingFeed(@PathVariable Long id) {
+        log.debug("Подписка на живую ленту кампании {}", id);
+        return donationFeedService.subscribe(id);
+    }
+
+    // Ряд для графика сборов: granularity=hour|day, from/to в формате ISO
+    @GetMapping("/{id}/rollups")
+    public ResponseEntity<RollupSeries> getFundraisingRollups(
+            @PathVariable Long id,
+            @RequestParam(value = "granularity", defaultValue = "day") String granularity,
+            @RequestParam(value = "from", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(value = "to", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        log.debug("Получение агрегатов пожертвований кампании {} ({})", id, granularity);
+        return ResponseEntity.ok(donationRollupService.getSeries(
+                DonationRollup.Scope.FUNDRAISING, id, granularity, from, to));
+    }
+
+    @GetMapping("/{id}/recurring-forecast")
+    public ResponseEntity<RecurringForecast> getFundraisingRecurringForecast(
+            @PathVariable Long id,
+            @RequestParam(value = "months", defaultValue = "12") int months) {
+        log.debug("Получение прогноза регулярных поступлений кампании {} на {} мес.", id, months);
+        return ResponseEntity.ok(recurringForecastService.getFundraisingForecast(id, months));
+    }
+
+    @GetMapping("/page")
+    public ResponseEntity<CursorPage<FundraisingSummary>> getFundraisingsPage(
+            @RequestParam(value = "after", required = false) Long after,
+            @RequestParam(value = "limit", defaultValue = "20") int limit) {
+        log.debug("Получение страницы фандрайзинговых кампаний после {}", after);
+        return ResponseEntity.ok(fundraisingService.getFundraisingSummaries(after, limit));
+    }
+
     @GetMapping("/{id}")
-    public ResponseEntity<Fundraising> getFundraisingById(@PathVariable Long id) {
+    public ResponseEntity<FundraisingDetailsResponse> getFundraisingById(@PathVariable Long id, WebRequest webRequest) {
         log.debug("Получение фандрайзинговой кампании по ID: {}", id);
-        return ResponseEntity.ok(fundraisingService.getFundraisingById(id));
+        String etag = resourceVersionService.getFundraisingEtag(id);
+        if (webRequest.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok().eTag(etag).body(fundraisingService.getFundraisingById(id));
     }
 
     @GetMapping("/active")
@@ -70,16 +134,37 @@ public class FundraisingController {
         return ResponseEntity.ok().build();
     }
 
+    // Возврат пожертвований идет в фоне: 202 и задача возврата, если кампании было что возвращать
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> deleteFundraising(
+    public ResponseEntity<RefundJob> deleteFundraising(
             @PathVariable Long id,
             @RequestHeader("Authorization") String authHeader) {
         validateToken(authHeader);
+        Long userId = jwtService.extractUserId(authHeader.substring(7));
         log.info("Удаление фандрайзинговой кампании: {}", id);
-        fundraisingService.deleteFundraising(id);
+        RefundJob refundJob = fundraisingService.deleteFundraising(id, userId);
+        if (refundJob != null) {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(refundJob);
+        }
         return ResponseEntity.noContent().build();
     }
 
+    @PostMapping("/{id}/cancel")
+    public ResponseEntity<RefundJob> cancelFundraising(
+            @PathVariable Long id,
+            @RequestHeader("Authorization") String authHeader) {
+        validateToken(authHeader);
+        Long userId = jwtService.extractUserId(authHeader.substring(7));
+        log.info("Отмена фандрайзинговой кампании: {}", id);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(fundraisingService.cancelFundraising(id, userId));
+    }
+
+    @GetMapping("/{id}/refund")
+    public ResponseEntity<RefundJob> getRefundJob(@PathVariable Long id) {
+        log.debug("Получение состояния возврата пожертвований кампании {}", id);
+        return ResponseEntity.ok(refundJobService.getLatestJob(id));
+    }
+
     private void validateToken(String authHeader) {
         if (authHeader == null || !authHeader.startsWith("Bearer ")) {
             log.error("Отсутствует или неверный формат токена авторизации");
@@ -3,11 +3,16 @@ package org.example.controller;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.example.dto.CreateReportRequest;
+import org.example.dto.CursorPage;
+import org.example.dto.ReportSummary;
 import org.example.model.Report;
 import org.example.service.JwtService;
+import org.example.service.ResourceVersionService;
 import org.example.service.ReportService;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
 import javax.validation.Valid;
@@ -18,10 +23,11 @@ import java.util.List;
 @RestController
 @RequestMapping("/api/reports")
 @RequiredArgsConstructor
-@CrossOrigin(origins = "http://localhost:3000")
+@CrossOrigin(origins = "http://localhost:3000", exposedHeaders = "ETag")
 public class ReportController {
     private final ReportService reportService;
     private final JwtService jwtService;
+    private final ResourceVersionService resourceVersionService;
 
     @PostMapping
     public ResponseEntity<Report> createReport(
@@ -40,17 +46,30 @@ public class ReportController {
     }
 
     @GetMapping("/fundraising/{fundraisingId}")
-    public ResponseEntity<List<Report>> getFundraisingReports(@PathVariable Long fundraisingId) {
+    public ResponseEntity<List<Report>> getFundraisingReports(@PathVariable Long fundraisingId, WebRequest webRequest) {
         log.debug("Получен запрос на получение отчетов фандрайзинга {}", fundraisingId);
-        return ResponseEntity.ok(reportService.getFundraisingReports(fundraisingId));
+        String etag = resourceVersionService.getFundraisingReportsEtag(fundraisingId);
+        if (webRequest.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok().eTag(etag).body(reportService.getFundraisingReports(fundraisingId));
     }
 
     @GetMapping("/charity/{charityId}")
-    public ResponseEntity<List<Report>> getCharityReports(@PathVariable Long charityId) {
+    public ResponseEntity<List<ReportSummary>> getCharityReports(@PathVariable Long charityId) {
         log.debug("Получен запрос на получение отчетов благотворительной организации {}", charityId);
         return ResponseEntity.ok(reportService.getCharityReports(charityId));
     }
 
+    @GetMapping("/charity/{charityId}/page")
+    public ResponseEntity<CursorPage<ReportSummary>> getCharityReportsPage(
+            @PathVariable Long charityId,
+            @RequestParam(value = "after", required = false) String after,
+            @RequestParam(value = "limit", defaultValue = "20") int limit) {
+        log.debug("Получен запрос на страницу отчетов благотворительной организации {} после {}", charityId, after);
+        return ResponseEntity.ok(reportService.getCharityReportsPage(charityId, after, limit));
+    }
+
     @PostMapping("/{reportId}/verify")
     public ResponseEntity<Report> verifyReport(@PathVariable Long reportId) {
         log.info("Получен запрос на верификацию отчета {}", reportId);
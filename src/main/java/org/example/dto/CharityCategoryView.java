@@ -0,0 +1,7 @@
+package org.example.dto;
+
+// Пара "организация - категория" из таблицы charity_categories
+public interface CharityCategoryView {
+    Long getCharityId();
+    String getCategory();
+}
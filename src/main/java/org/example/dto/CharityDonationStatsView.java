@@ -0,0 +1,12 @@
+package org.example.dto;
+
+import java.math.BigDecimal;
+
+// Агрегированная статистика пожертвований по одной организации
+public interface CharityDonationStatsView {
+    Long getCharityId();
+    BigDecimal getTotalAmount();
+    Long getDonorCount();
+    Long getRecurringCount();
+    Long getDonationCount();
+}
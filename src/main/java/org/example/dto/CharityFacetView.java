@@ -0,0 +1,8 @@
+package org.example.dto;
+
+// Признаки организации, по которым фасетный индекс решает, показывать ли ее
+public interface CharityFacetView {
+    Long getCharityId();
+    Boolean getVerified();
+    Boolean getActive();
+}
@@ -0,0 +1,21 @@
+package org.example.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CharityFacets {
+    private String mode;
+    // Число верифицированных активных организаций, подходящих под фильтр
+    private long total;
+    // Количество подходящих организаций в каждой категории
+    private Map<String, Long> counts;
+    // Первые ID подходящих организаций по возрастанию
+    private List<Long> charityIds;
+}
@@ -0,0 +1,30 @@
+package org.example.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
+
+// Облегченная карточка организации для списков
+@Data
+@NoArgsConstructor
+public class CharitySummary {
+    private Long id;
+    private String name;
+    private String description;
+    private boolean verified;
+    private boolean active;
+    private LocalDateTime createdAt;
+    private Set<String> categories = new HashSet<>();
+
+    public CharitySummary(Long id, String name, String description, boolean verified, boolean active,
+            LocalDateTime createdAt) {
+        this.id = id;
+        this.name = name;
+        this.description = description;
+        this.verified = verified;
+        this.active = active;
+        this.createdAt = createdAt;
+    }
+}
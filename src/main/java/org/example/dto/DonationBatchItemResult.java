@@ -0,0 +1,17 @@
+package org.example.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DonationBatchItemResult {
+    // Позиция элемента в исходном пакете
+    private int index;
+    // CREATED или REJECTED
+    private String status;
+    private Long donationId;
+    private String error;
+}
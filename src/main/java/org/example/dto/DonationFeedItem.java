@@ -0,0 +1,20 @@
+package org.example.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Пожертвование в живой ленте кампании: только имя донора, без фамилии и контактов;
+// donorName равен null для анонимных пожертвований
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DonationFeedItem {
+    private Long donationId;
+    private BigDecimal amount;
+    private String donorName;
+    private boolean recurring;
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,28 @@
+package org.example.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.example.model.Donation;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Строка истории пожертвований; donorName равен null для анонимных пожертвований
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DonationHistoryItem {
+    private Long id;
+    private Long fundraisingId;
+    private String fundraisingTitle;
+    private Long charityId;
+    private String charityName;
+    private BigDecimal amount;
+    private Donation.PaymentStatus status;
+    private String paymentMethod;
+    private String message;
+    private boolean anonymous;
+    private boolean recurring;
+    private LocalDateTime createdAt;
+    private String donorName;
+}
@@ -0,0 +1,35 @@
+package org.example.dto;
+
+import lombok.Value;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Карточка кампании для кэша ответов: неизменяемый снимок без сущностей. Автор - только ID и имя,
+// вместо донатов и подписок - счетчики из статистики кампании
+@Value
+public class FundraisingDetailsResponse {
+    Long id;
+    Long charityId;
+    String title;
+    String description;
+    BigDecimal targetAmount;
+    BigDecimal currentAmount;
+    LocalDateTime startDate;
+    LocalDateTime endDate;
+    LocalDateTime createdAt;
+    String imageUrl;
+    boolean active;
+    boolean completed;
+    String diagnosis;
+    Long createdById;
+    String createdByName;
+    List<DocumentDTO> documents;
+    List<ReportSummary> reports;
+
+    // Статистика
+    BigDecimal totalDonations;
+    long totalDonors;
+    long donationsCount;
+    long recurringDonationsCount;
+}
@@ -0,0 +1,19 @@
+package org.example.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.math.BigDecimal;
+import java.util.List;
+
+// Событие SSE-ленты кампании: текущий прогресс и пожертвования с прошлого события
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FundraisingFeedUpdate {
+    private Long fundraisingId;
+    private BigDecimal currentAmount;
+    private BigDecimal targetAmount;
+    private boolean completed;
+    private List<DonationFeedItem> donations;
+}
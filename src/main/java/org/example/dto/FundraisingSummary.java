@@ -0,0 +1,25 @@
+package org.example.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Облегченная карточка фандрайзинговой кампании для списков
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FundraisingSummary {
+    private Long id;
+    private Long charityId;
+    private String charityName;
+    private String title;
+    private BigDecimal targetAmount;
+    private BigDecimal currentAmount;
+    private String imageUrl;
+    private boolean active;
+    private boolean completed;
+    private LocalDateTime startDate;
+    private LocalDateTime endDate;
+}
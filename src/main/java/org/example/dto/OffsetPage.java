@@ -0,0 +1,18 @@
+package org.example.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.util.List;
+
+// Страница по номеру без подсчета общего количества: hasNext определяется
+// по одной лишней записи, поэтому страница получается одним запросом
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OffsetPage<T> {
+    private List<T> items;
+    private int page;
+    private int size;
+    private boolean hasNext;
+}
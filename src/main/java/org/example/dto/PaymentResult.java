@@ -0,0 +1,22 @@
+package org.example.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Окончательный ответ платежного шлюза: списание прошло или отклонено банком
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentResult {
+    private boolean approved;
+    private String message;
+
+    public static PaymentResult approved() {
+        return new PaymentResult(true, null);
+    }
+
+    public static PaymentResult declined(String message) {
+        return new PaymentResult(false, message);
+    }
+}
@@ -0,0 +1,18 @@
+package org.example.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+// Списание регулярного платежа, отправляемое в платежный шлюз
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RecurringChargeItem {
+    private Long donationId;
+    private String transactionId;
+    private BigDecimal amount;
+    private String paymentMethod;
+}
@@ -0,0 +1,19 @@
+package org.example.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+// Итог списания порции регулярных платежей по одной кампании
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RecurringChargeTotal {
+    private Long fundraisingId;
+    private Long charityId;
+    private BigDecimal targetAmount;
+    private BigDecimal amount;
+    private Long count;
+}
@@ -0,0 +1,23 @@
+package org.example.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+// Прогноз поступлений по активным подпискам на months месяцев, начиная с текущего (только еще
+// не списанные в нем платежи). Для организации fundraisings содержит ряды ее кампаний
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RecurringForecast {
+    private String scope;
+    private Long scopeId;
+    private int months;
+    private long subscriptions;
+    private BigDecimal total;
+    private List<RecurringForecastPoint> points;
+    private List<RecurringForecastSeries> fundraisings;
+}
@@ -0,0 +1,18 @@
+package org.example.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+// Ожидаемые поступления за месяц: month - первое число месяца
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RecurringForecastPoint {
+    private LocalDate month;
+    private BigDecimal amount;
+    private long payments;
+}
@@ -0,0 +1,20 @@
+package org.example.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Подписка в том виде, в каком она нужна снимку для прогноза поступлений
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RecurringForecastRow {
+    private Long id;
+    private Long fundraisingId;
+    private BigDecimal amount;
+    private LocalDateTime nextPaymentDate;
+    private boolean active;
+}
@@ -0,0 +1,18 @@
+package org.example.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RecurringForecastSeries {
+    private Long fundraisingId;
+    private long subscriptions;
+    private BigDecimal total;
+    private List<RecurringForecastPoint> points;
+}
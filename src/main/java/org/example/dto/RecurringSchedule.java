@@ -0,0 +1,17 @@
+package org.example.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Срок следующего списания подписки - все, что нужно колесу таймеров
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RecurringSchedule {
+    private Long id;
+    private LocalDateTime nextPaymentDate;
+    private boolean active;
+}
@@ -0,0 +1,19 @@
+package org.example.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Пожертвование в порции возврата: только поля, нужные шлюзу и агрегатам
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RefundItem {
+    private Long donationId;
+    private String transactionId;
+    private BigDecimal amount;
+    private LocalDateTime createdAt;
+}
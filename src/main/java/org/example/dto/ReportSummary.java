@@ -0,0 +1,38 @@
+package org.example.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// Облегченный отчет для постраничных списков: от кампании только ID и название
+@Data
+@NoArgsConstructor
+public class ReportSummary {
+    private Long id;
+    private Long fundraisingId;
+    private String fundraisingTitle;
+    private String title;
+    private String description;
+    private BigDecimal spentAmount;
+    private List<String> documentUrls = new ArrayList<>();
+    private List<String> documentDescriptions = new ArrayList<>();
+    private LocalDateTime reportDate;
+    private LocalDateTime createdAt;
+    private boolean verified;
+
+    public ReportSummary(Long id, Long fundraisingId, String fundraisingTitle, String title, String description,
+            BigDecimal spentAmount, LocalDateTime reportDate, LocalDateTime createdAt, boolean verified) {
+        this.id = id;
+        this.fundraisingId = fundraisingId;
+        this.fundraisingTitle = fundraisingTitle;
+        this.title = title;
+        this.description = description;
+        this.spentAmount = spentAmount;
+        this.reportDate = reportDate;
+        this.createdAt = createdAt;
+        this.verified = verified;
+    }
+}
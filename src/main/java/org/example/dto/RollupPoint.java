@@ -0,0 +1,18 @@
+package org.example.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Точка графика: donorEstimate - приближенное число уникальных доноров за интервал
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RollupPoint {
+    private LocalDateTime bucketStart;
+    private BigDecimal amount;
+    private long donationCount;
+    private long donorEstimate;
+}
@@ -0,0 +1,20 @@
+package org.example.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Ряд для графика: по точке на каждый интервал [from, to), пустые интервалы заполнены нулями
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RollupSeries {
+    private String scope;
+    private Long scopeId;
+    private String granularity;
+    private LocalDateTime from;
+    private LocalDateTime to;
+    private List<RollupPoint> points;
+}
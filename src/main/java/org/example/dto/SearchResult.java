@@ -0,0 +1,17 @@
+package org.example.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SearchResult {
+    // CHARITY, FUNDRAISING или REPORT
+    private String type;
+    private Long id;
+    private String title;
+    private String description;
+    private double rank;
+}
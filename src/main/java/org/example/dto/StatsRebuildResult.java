@@ -0,0 +1,17 @@
+package org.example.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StatsRebuildResult {
+    // Расхождения с данными donations, найденные до пересчета
+    private long fundraisingMismatches;
+    private long charityMismatches;
+    // Количество строк после пересчета (0, если пересчет не выполнялся)
+    private long fundraisingRows;
+    private long charityRows;
+}
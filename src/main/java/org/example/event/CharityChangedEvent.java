@@ -0,0 +1,11 @@
+package org.example.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+// Изменились данные благотворительной организации
+@Data
+@AllArgsConstructor
+public class CharityChangedEvent {
+    private Long charityId;
+}
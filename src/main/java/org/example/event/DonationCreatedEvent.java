@@ -0,0 +1,13 @@
+package org.example.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.example.dto.DonationFeedItem;
+
+// Пожертвование записано; item уже обезличен и пригоден для публичной ленты кампании
+@Data
+@AllArgsConstructor
+public class DonationCreatedEvent {
+    private Long fundraisingId;
+    private DonationFeedItem item;
+}
@@ -0,0 +1,13 @@
+package org.example.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+// Изменилась кампания: ее данные, документы, отчеты или собранная сумма.
+// Вместе с кампанией меняется и ответ по ее организации
+@Data
+@AllArgsConstructor
+public class FundraisingChangedEvent {
+    private Long fundraisingId;
+    private Long charityId;
+}
@@ -0,0 +1,15 @@
+package org.example.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+// Пожертвование в общий фонд записано, но еще не учтено в current_amount и статистике.
+// Отрицательная сумма - удаление такого пожертвования до сброса счетчика
+@Data
+@AllArgsConstructor
+public class GeneralFundDonationEvent {
+    private Long fundraisingId;
+    private BigDecimal amount;
+}
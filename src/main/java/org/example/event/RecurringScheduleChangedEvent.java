@@ -0,0 +1,14 @@
+package org.example.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.example.dto.RecurringSchedule;
+
+import java.util.List;
+
+// Подписки создана, отменена или списана: колесо таймеров переставляет их сроки после коммита
+@Data
+@AllArgsConstructor
+public class RecurringScheduleChangedEvent {
+    private List<RecurringSchedule> schedules;
+}
@@ -0,0 +1,8 @@
+package org.example.exception;
+
+// Повтор запроса, который еще обрабатывается (отвечаем 409 Conflict)
+public class DuplicateRequestException extends RuntimeException {
+    public DuplicateRequestException(String message) {
+        super(message);
+    }
+}
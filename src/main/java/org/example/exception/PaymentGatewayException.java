@@ -0,0 +1,12 @@
+package org.example.exception;
+
+// Временная ошибка платежного шлюза (таймаут, недоступность): платеж можно повторить
+public class PaymentGatewayException extends RuntimeException {
+    public PaymentGatewayException(String message) {
+        super(message);
+    }
+
+    public PaymentGatewayException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -71,6 +71,11 @@ public class Charity {
     private boolean verified;
     private boolean active = true;
 
+    // Версия для ETag: меняется только через CharityRepository.incrementVersion,
+    // поэтому сохранение устаревшей сущности ее не откатит
+    @Column(name = "version", nullable = false, columnDefinition = "bigint default 0", updatable = false)
+    private long version;
+
     @ElementCollection
     @CollectionTable(name = "charity_documents", joinColumns = @JoinColumn(name = "charity_id"))
     private List<Document> documents = new ArrayList<>();
@@ -0,0 +1,35 @@
+package org.example.model;
+
+import javax.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Статистика пожертвований по организации в целом (по всем ее кампаниям)
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "charity_stats")
+public class CharityStats {
+
+    @Id
+    @Column(name = "charity_id")
+    private Long charityId;
+
+    // Сумма только завершенных пожертвований
+    @Column(name = "total_amount", nullable = false)
+    private BigDecimal totalAmount = BigDecimal.ZERO;
+
+    @Column(name = "donor_count", nullable = false)
+    private long donorCount;
+
+    @Column(name = "recurring_count", nullable = false)
+    private long recurringCount;
+
+    @Column(name = "donation_count", nullable = false)
+    private long donationCount;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -1,5 +1,6 @@
 package org.example.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import javax.persistence.*;
 import lombok.Data;
@@ -10,12 +11,20 @@ import java.time.LocalDateTime;
 @Data
 @NoArgsConstructor
 @Entity
-@Table(name = "donations")
+@Table(name = "donations", indexes = {
+        @Index(name = "idx_donations_fundraising_user", columnList = "fundraising_id, user_id"),
+        @Index(name = "idx_donations_user_created", columnList = "user_id, created_at"),
+        @Index(name = "idx_donations_fundraising_created", columnList = "fundraising_id, created_at"),
+        @Index(name = "idx_donations_payment_due", columnList = "payment_status, next_payment_attempt_at"),
+        @Index(name = "idx_donations_recurring_payment", columnList = "recurring_payment_id, created_at")
+})
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
 public class Donation {
     
+    // Последовательность с шагом 50: Hibernate выдает ID без обращения к базе и может группировать INSERT в батчи
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "donations_seq")
+    @SequenceGenerator(name = "donations_seq", sequenceName = "donations_id_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.EAGER)
@@ -47,13 +56,35 @@ public class Donation {
     @Column(name = "recurring_interval")
     private String recurringInterval;
 
+    // Подписка, по которой списано пожертвование; у разовых и первых пожертвований подписки null
+    @Column(name = "recurring_payment_id")
+    private Long recurringPaymentId;
+
     @Column(name = "created_at")
     private LocalDateTime createdAt;
 
+    // false, пока пожертвование не учтено в статистике (см. OutboxDispatcherService), а для общего фонда -
+    // еще и в current_amount (см. GeneralFundCounterService)
+    @JsonIgnore
+    @Column(name = "totals_applied", nullable = false, columnDefinition = "boolean default true")
+    private boolean totalsApplied = true;
+
     @Column(name = "payment_status")
     @Enumerated(EnumType.STRING)
     private PaymentStatus paymentStatus;
 
+    // Состояние обработки платежа воркером PaymentProcessingService
+    @JsonIgnore
+    @Column(name = "payment_attempts", nullable = false, columnDefinition = "integer default 0")
+    private int paymentAttempts;
+
+    @JsonIgnore
+    @Column(name = "next_payment_attempt_at")
+    private LocalDateTime nextPaymentAttemptAt;
+
+    @Column(name = "payment_error", length = 500)
+    private String paymentError;
+
     // Поле для передачи статуса на фронтенд
     @Transient
     private String status;
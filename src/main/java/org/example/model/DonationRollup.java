@@ -0,0 +1,81 @@
+package org.example.model;
+
+import javax.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Сумма, количество и эскиз уникальных доноров за час или день по кампании или организации
+@Data
+@NoArgsConstructor
+@Entity
+@IdClass(DonationRollup.Key.class)
+@Table(name = "donation_rollups", indexes = {
+        @Index(name = "idx_donation_rollups_range", columnList = "scope, scope_id, bucket_start"),
+        @Index(name = "idx_donation_rollups_compaction", columnList = "granularity, bucket_start")
+})
+public class DonationRollup {
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20)
+    private Scope scope;
+
+    @Id
+    @Column(name = "scope_id")
+    private Long scopeId;
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(length = 10)
+    private Granularity granularity;
+
+    @Id
+    @Column(name = "bucket_start")
+    private LocalDateTime bucketStart;
+
+    @Column(nullable = false)
+    private BigDecimal amount = BigDecimal.ZERO;
+
+    @Column(name = "donation_count", nullable = false)
+    private long donationCount;
+
+    // Регистры HyperLogLog (см. DonorSketch)
+    @Column(name = "donor_sketch", nullable = false, length = 1024)
+    private byte[] donorSketch;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    public enum Scope {
+        FUNDRAISING, CHARITY
+    }
+
+    public enum Granularity {
+        HOUR, DAY
+    }
+
+    public DonationRollup(Key key) {
+        this.scope = key.getScope();
+        this.scopeId = key.getScopeId();
+        this.granularity = key.getGranularity();
+        this.bucketStart = key.getBucketStart();
+    }
+
+    public Key key() {
+        return new Key(scope, scopeId, granularity, bucketStart);
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Scope scope;
+        private Long scopeId;
+        private Granularity granularity;
+        private LocalDateTime bucketStart;
+    }
+}
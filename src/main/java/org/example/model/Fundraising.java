@@ -1,6 +1,7 @@
 package org.example.model;
 
 import com.fasterxml.jackson.annotation.JsonBackReference;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import javax.persistence.*;
 import lombok.Data;
@@ -13,7 +14,7 @@ import java.util.List;
 @Data
 @NoArgsConstructor
 @Entity
-@Table(name = "fundraisings")
+@Table(name = "fundraisings", indexes = @Index(name = "idx_fundraisings_charity", columnList = "charity_id"))
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
 public class Fundraising {
     
@@ -51,9 +52,16 @@ public class Fundraising {
     @Column(name = "target_amount", nullable = false)
     private BigDecimal targetAmount;
 
-    @Column(name = "current_amount", nullable = false)
+    // Меняется только атомарными UPDATE в FundraisingRepository, чтобы параллельные пожертвования не терялись
+    @Column(name = "current_amount", nullable = false, updatable = false)
     private BigDecimal currentAmount;
 
+    // Сумма пожертвований, платежи по которым еще обрабатываются: учитывается в лимите цели,
+    // но в current_amount переходит только после подтверждения платежа
+    @JsonIgnore
+    @Column(name = "reserved_amount", nullable = false, columnDefinition = "numeric(19,2) default 0", updatable = false)
+    private BigDecimal reservedAmount = BigDecimal.ZERO;
+
     @Column(name = "start_date", nullable = false)
     private LocalDateTime startDate;
 
@@ -72,6 +80,10 @@ public class Fundraising {
     @Column(name = "is_completed")
     private boolean completed;
 
+    // Растет при каждом изменении кампании и каждом пожертвовании (см. Charity.version)
+    @Column(name = "version", nullable = false, columnDefinition = "bigint default 0", updatable = false)
+    private long version;
+
     @Column(name = "diagnosis", length = 1000)
     private String diagnosis;
 
@@ -0,0 +1,71 @@
+package org.example.model;
+
+import javax.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+
+// Событие, записанное в одной транзакции с изменением и обрабатываемое фоновым диспетчером.
+// Обработанные события удаляются, исчерпавшие попытки остаются со статусом FAILED
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "outbox_events", indexes = {
+        @Index(name = "idx_outbox_events_status", columnList = "status, id"),
+        @Index(name = "idx_outbox_events_aggregate", columnList = "aggregate_id, status")
+})
+public class OutboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "event_type", nullable = false, length = 50)
+    private Type eventType;
+
+    // Ключ упорядочивания: события одного агрегата (кампании) обрабатываются по порядку
+    @Column(name = "aggregate_id", nullable = false)
+    private Long aggregateId;
+
+    @Column(name = "entity_id", nullable = false)
+    private Long entityId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Status status = Status.PENDING;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    public enum Type {
+        DONATION_CREATED
+    }
+
+    public enum Status {
+        PENDING, FAILED
+    }
+
+    public OutboxEvent(Type eventType, Long aggregateId, Long entityId) {
+        this.eventType = eventType;
+        this.aggregateId = aggregateId;
+        this.entityId = entityId;
+    }
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        if (nextAttemptAt == null) {
+            nextAttemptAt = createdAt;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package org.example.model;
+
+import javax.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+
+// Узел, участвующий в списании регулярных платежей; по живым узлам делятся разделы подписок
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "recurring_billing_nodes")
+public class RecurringBillingNode {
+
+    @Id
+    @Column(name = "node_id", length = 100)
+    private String nodeId;
+
+    @Column(name = "heartbeat_at", nullable = false)
+    private LocalDateTime heartbeatAt;
+
+    @Column(name = "started_at", nullable = false)
+    private LocalDateTime startedAt;
+}
@@ -0,0 +1,32 @@
+package org.example.model;
+
+import javax.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+
+// Аренда раздела подписок: раздел - остаток от деления ID подписки на число разделов.
+// Подписки раздела списывает только узел-владелец, пока аренда не истекла
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "recurring_partition_leases")
+public class RecurringPartitionLease {
+
+    @Id
+    @Column(name = "partition_no")
+    private Integer partitionNo;
+
+    @Column(name = "owner_node", length = 100)
+    private String ownerNode;
+
+    @Column(name = "lease_until")
+    private LocalDateTime leaseUntil;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    public RecurringPartitionLease(Integer partitionNo) {
+        this.partitionNo = partitionNo;
+    }
+}
@@ -11,7 +11,10 @@ import java.time.LocalDateTime;
 @Data
 @NoArgsConstructor
 @Entity
-@Table(name = "recurring_payments")
+@Table(name = "recurring_payments", indexes = {
+        @Index(name = "idx_recurring_payments_due", columnList = "is_active, next_payment_date"),
+        @Index(name = "idx_recurring_payments_updated", columnList = "updated_at")
+})
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
 public class RecurringPayment {
     @Id
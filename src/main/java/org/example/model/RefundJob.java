@@ -0,0 +1,84 @@
+package org.example.model;
+
+import javax.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Возврат пожертвований отмененной или удаляемой кампании. Прогресс (последний обработанный ID
+// пожертвования и итоги) сохраняется после каждой порции, поэтому после перезапуска задача продолжается
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "refund_jobs", indexes = {
+        @Index(name = "idx_refund_jobs_status", columnList = "status, id"),
+        @Index(name = "idx_refund_jobs_fundraising", columnList = "fundraising_id")
+})
+public class RefundJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Без внешнего ключа: кампания удаляется, когда возвраты завершены
+    @Column(name = "fundraising_id", nullable = false)
+    private Long fundraisingId;
+
+    @Column(name = "charity_id", nullable = false)
+    private Long charityId;
+
+    @Column(name = "requested_by_user_id")
+    private Long requestedByUserId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Status status = Status.RUNNING;
+
+    // Удалить кампанию после возврата всех пожертвований
+    @Column(name = "delete_fundraising", nullable = false)
+    private boolean deleteFundraising;
+
+    @Column(name = "last_donation_id", nullable = false)
+    private long lastDonationId;
+
+    // Проход по пожертвованиям; следующий проход повторяет только не возвращенные
+    @Column(nullable = false)
+    private int pass = 1;
+
+    @Column(name = "refunded_count", nullable = false)
+    private long refundedCount;
+
+    @Column(name = "refunded_amount", nullable = false)
+    private BigDecimal refundedAmount = BigDecimal.ZERO;
+
+    // Ошибки возврата в текущем проходе
+    @Column(name = "failed_count", nullable = false)
+    private long failedCount;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    // До этого времени задачу не берут другие обработчики (аренда или пауза перед следующим проходом)
+    @Column(name = "locked_until")
+    private LocalDateTime lockedUntil;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+    public enum Status {
+        RUNNING, COMPLETED, FAILED
+    }
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = createdAt;
+    }
+}
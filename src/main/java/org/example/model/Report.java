@@ -15,7 +15,7 @@ import java.util.List;
 @Data
 @NoArgsConstructor
 @Entity
-@Table(name = "reports")
+@Table(name = "reports", indexes = @Index(name = "idx_reports_fundraising_date", columnList = "fundraising_id, report_date"))
 @TypeDef(name = "string-array", typeClass = StringArrayType.class)
 public class Report {
     @Id
@@ -51,6 +51,10 @@ public class Report {
     @Column(name = "created_at")
     private LocalDateTime createdAt;
 
+    // Версия отчета для ETag списка отчетов кампании (см. Charity.version)
+    @Column(name = "version", nullable = false, columnDefinition = "bigint default 0", updatable = false)
+    private long version;
+
     @Column(name = "is_verified")
     private boolean verified;
 
@@ -1,11 +1,18 @@
 package org.example.repository;
 
+import org.example.dto.CharityCategoryView;
+import org.example.dto.CharityFacetView;
+import org.example.dto.CharitySummary;
 import org.example.model.Charity;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface CharityRepository extends JpaRepository<Charity, Long> {
@@ -16,4 +23,27 @@ public interface CharityRepository extends JpaRepository<Charity, Long> {
     
     List<Charity> findByVerifiedTrue();
     List<Charity> findByActiveTrue();
-} 
\ No newline at end of file
+
+    @Query("SELECT c.version FROM Charity c WHERE c.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Charity c SET c.version = c.version + 1 WHERE c.id = :id")
+    int incrementVersion(@Param("id") Long id);
+
+    @Query("SELECT new org.example.dto.CharitySummary(c.id, c.name, c.description, c.verified, c.active, c.createdAt) " +
+           "FROM Charity c WHERE c.id > :after ORDER BY c.id")
+    List<CharitySummary> findSummariesAfter(@Param("after") Long after, Pageable pageable);
+
+    @Query("SELECT c.id AS charityId, cat AS category FROM Charity c JOIN c.categories cat WHERE c.id IN :charityIds")
+    List<CharityCategoryView> findCategoriesByCharityIds(@Param("charityIds") Collection<Long> charityIds);
+
+    @Query("SELECT c.id AS charityId, cat AS category FROM Charity c JOIN c.categories cat")
+    List<CharityCategoryView> findAllCategories();
+
+    @Query("SELECT c.id AS charityId, c.verified AS verified, c.active AS active FROM Charity c")
+    List<CharityFacetView> findAllFacetRows();
+
+    @Query("SELECT c.id AS charityId, c.verified AS verified, c.active AS active FROM Charity c WHERE c.id = :id")
+    Optional<CharityFacetView> findFacetRowById(@Param("id") Long id);
+}
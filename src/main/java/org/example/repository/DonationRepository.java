@@ -1,17 +1,43 @@
 package org.example.repository;
 
+import org.example.dto.CharityDonationStatsView;
+import org.example.dto.DonationHistoryItem;
+import org.example.dto.RecurringChargeItem;
+import org.example.dto.RecurringChargeTotal;
+import org.example.dto.RefundItem;
 import org.example.model.Donation;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface DonationRepository extends JpaRepository<Donation, Long> {
     List<Donation> findByUserId(Long userId);
     List<Donation> findByFundraisingId(Long fundraisingId);
     List<Donation> findByRecurringTrue();
+    Optional<Donation> findByTransactionId(String transactionId);
+
+    // История пожертвований одним SELECT с названиями кампании и фонда; сортировка передается в Pageable
+    String HISTORY_SELECT = "SELECT new org.example.dto.DonationHistoryItem(d.id, f.id, f.title, c.id, c.name, " +
+           "d.amount, d.paymentStatus, d.paymentMethod, d.message, d.anonymous, d.recurring, d.createdAt, " +
+           "CASE WHEN d.anonymous = false THEN CONCAT(CONCAT(COALESCE(u.firstName, ''), ' '), " +
+           "COALESCE(u.lastName, '')) ELSE NULL END) " +
+           "FROM Donation d JOIN d.fundraising f JOIN f.charity c JOIN d.user u ";
+
+    @Query(HISTORY_SELECT + "WHERE u.id = :userId")
+    Slice<DonationHistoryItem> findHistoryByUserId(@Param("userId") Long userId, Pageable pageable);
+
+    @Query(HISTORY_SELECT + "WHERE f.id = :fundraisingId")
+    Slice<DonationHistoryItem> findHistoryByFundraisingId(@Param("fundraisingId") Long fundraisingId, Pageable pageable);
     
     @Query("SELECT SUM(d.amount) FROM Donation d WHERE d.fundraising.id = :fundraisingId AND d.paymentStatus = 'COMPLETED'")
     BigDecimal getTotalAmountByFundraisingId(Long fundraisingId);
@@ -19,6 +45,138 @@ public interface DonationRepository extends JpaRepository<Donation, Long> {
     @Query("SELECT SUM(d.amount) FROM Donation d WHERE d.user.id = :userId AND d.paymentStatus = 'COMPLETED'")
     BigDecimal getTotalAmountByUserId(Long userId);
 
+    // Статистика сразу для пачки организаций: сумма завершенных пожертвований,
+    // уникальные доноры и регулярные пожертвования за один запрос (без еще не учтенных пожертвований общего фонда)
+    @Query("SELECT f.charity.id AS charityId, " +
+           "COALESCE(SUM(CASE WHEN d.paymentStatus = 'COMPLETED' THEN d.amount ELSE 0 END), 0) AS totalAmount, " +
+           "COUNT(DISTINCT d.user.id) AS donorCount, " +
+           "SUM(CASE WHEN d.recurring = true THEN 1 ELSE 0 END) AS recurringCount, " +
+           "COUNT(d) AS donationCount " +
+           "FROM Donation d JOIN d.fundraising f " +
+           "WHERE f.charity.id IN :charityIds AND d.totalsApplied = true " +
+           "GROUP BY f.charity.id")
+    List<CharityDonationStatsView> getDonationStatsByCharityIds(@Param("charityIds") Collection<Long> charityIds);
+
+    // Есть ли у пользователя другие уже учтенные в статистике пожертвования в кампании / организации
+    boolean existsByFundraisingIdAndUserIdAndIdNotAndTotalsAppliedTrue(Long fundraisingId, Long userId, Long id);
+    boolean existsByFundraisingCharityIdAndUserIdAndIdNotAndTotalsAppliedTrue(Long charityId, Long userId, Long id);
+    boolean existsByFundraisingIdAndUserIdAndIdNotInAndTotalsAppliedTrue(Long fundraisingId, Long userId,
+                                                                       Collection<Long> ids);
+    boolean existsByFundraisingCharityIdAndUserIdAndIdNotInAndTotalsAppliedTrue(Long charityId, Long userId,
+                                                                             Collection<Long> ids);
+
+    // Пачка неучтенных пожертвований общего фонда. FOR UPDATE не дает двум сбросам учесть одну строку дважды.
+    // Пожертвования с неподтвержденным или отклоненным платежом в статистику не попадают
+    @Query(value = "SELECT id FROM donations WHERE fundraising_id = :fundraisingId AND totals_applied = false " +
+                   "AND payment_status = 'COMPLETED' ORDER BY id LIMIT :limit FOR UPDATE", nativeQuery = true)
+    List<Long> lockPendingTotals(@Param("fundraisingId") Long fundraisingId, @Param("limit") int limit);
+
+    // Неучтенные строки обычных кампаний принадлежат диспетчеру исходящих событий, здесь только общие фонды
+    @Query("SELECT DISTINCT d.fundraising.id FROM Donation d " +
+           "WHERE d.totalsApplied = false AND d.paymentStatus = 'COMPLETED' " +
+           "AND d.fundraising.targetAmount >= :generalFundTarget")
+    List<Long> findGeneralFundIdsWithPendingTotals(@Param("generalFundTarget") BigDecimal generalFundTarget);
+
+    // Захватывает перечисленные пожертвования, еще не учтенные в статистике
+    @Query(value = "SELECT id FROM donations WHERE id IN (:ids) AND totals_applied = false " +
+                   "ORDER BY id FOR UPDATE", nativeQuery = true)
+    List<Long> lockPendingTotalsByIds(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("UPDATE Donation d SET d.totalsApplied = true WHERE d.id IN :ids")
+    int markTotalsApplied(@Param("ids") Collection<Long> ids);
+
+    // Удаляет пожертвование, только если оно еще не учтено; 0 - строку уже обработал сброс счетчика
+    @Modifying
+    @Query("DELETE FROM Donation d WHERE d.id = :id AND d.totalsApplied = false")
+    int deleteIfTotalsPending(@Param("id") Long id);
+
+    // Пожертвования, платеж по которым пора отправить в шлюз (новые или ожидающие повтора)
+    @Query("SELECT d.id FROM Donation d WHERE d.paymentStatus = 'PENDING' AND d.nextPaymentAttemptAt <= :now " +
+           "ORDER BY d.nextPaymentAttemptAt, d.id")
+    List<Long> findDuePaymentIds(@Param("now") LocalDateTime now, Pageable pageable);
+
+    // Захват платежа воркером: срок следующей попытки сдвигается на время аренды, поэтому
+    // другой экземпляр не возьмет ту же строку, а после падения воркера она вернется в очередь
+    @Modifying
+    @Query("UPDATE Donation d SET d.nextPaymentAttemptAt = :leaseUntil " +
+           "WHERE d.id = :id AND d.paymentStatus = 'PENDING' AND d.nextPaymentAttemptAt <= :now")
+    int claimPayment(@Param("id") Long id, @Param("now") LocalDateTime now,
+                     @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    // Меняет статус только у еще не обработанного платежа; 0 - исход уже записан
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Donation d SET d.paymentStatus = :status, d.paymentError = :error, " +
+           "d.paymentAttempts = d.paymentAttempts + 1, d.nextPaymentAttemptAt = NULL " +
+           "WHERE d.id = :id AND d.paymentStatus = 'PENDING'")
+    int finishPayment(@Param("id") Long id, @Param("status") Donation.PaymentStatus status,
+                      @Param("error") String error);
+
+    @Modifying
+    @Query("UPDATE Donation d SET d.paymentAttempts = d.paymentAttempts + 1, d.nextPaymentAttemptAt = :nextAttemptAt, " +
+           "d.paymentError = :error WHERE d.id = :id AND d.paymentStatus = 'PENDING'")
+    int schedulePaymentRetry(@Param("id") Long id, @Param("nextAttemptAt") LocalDateTime nextAttemptAt,
+                             @Param("error") String error);
+
+    long countByPaymentStatus(Donation.PaymentStatus paymentStatus);
+
+    boolean existsByFundraisingIdAndPaymentStatusIn(Long fundraisingId, Collection<Donation.PaymentStatus> statuses);
+
+    // Порция оплаченных и уже учтенных пожертвований кампании для возврата, по возрастанию ID после курсора
+    @Query("SELECT new org.example.dto.RefundItem(d.id, d.transactionId, d.amount, d.createdAt) FROM Donation d " +
+           "WHERE d.fundraising.id = :fundraisingId AND d.paymentStatus = 'COMPLETED' AND d.totalsApplied = true " +
+           "AND d.id > :afterId ORDER BY d.id")
+    List<RefundItem> findRefundable(@Param("fundraisingId") Long fundraisingId, @Param("afterId") long afterId,
+                                    Pageable pageable);
+
+    // Захватывает пожертвования порции, которые все еще числятся оплаченными
+    @Query(value = "SELECT id FROM donations WHERE id IN (:ids) AND payment_status = 'COMPLETED' " +
+                   "ORDER BY id FOR UPDATE", nativeQuery = true)
+    List<Long> lockCompletedByIds(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("UPDATE Donation d SET d.paymentStatus = 'REFUNDED' WHERE d.id IN :ids")
+    int markRefunded(@Param("ids") Collection<Long> ids);
+
+    // Пожертвования за наступивший период по захваченным подпискам одним INSERT ... SELECT, в статусе PENDING:
+    // платеж проводит RecurringChargeService, а если узел упадет - PaymentProcessingService после retryAt.
+    // transaction_id recurring-<подписка>-<ГГГГ-ММ> - ключ идемпотентности: период не списывается дважды
+    @Modifying
+    @Query(value = "INSERT INTO donations (id, fundraising_id, user_id, amount, transaction_id, payment_method, " +
+                   "is_anonymous, is_recurring, recurring_interval, created_at, totals_applied, payment_status, " +
+                   "payment_attempts, next_payment_attempt_at, recurring_payment_id) " +
+                   "SELECT nextval('donations_id_seq'), p.fundraising_id, p.user_id, p.amount, " +
+                   "'recurring-' || p.id || '-' || TO_CHAR(p.next_payment_date, 'YYYY-MM'), 'CARD', " +
+                   "false, true, 'monthly', :billedAt, false, 'PENDING', 0, :retryAt, p.id " +
+                   "FROM recurring_payments p JOIN fundraisings f ON f.id = p.fundraising_id " +
+                   "WHERE p.id IN (:ids) AND p.is_active = true AND f.is_active = true " +
+                   "AND NOT EXISTS (SELECT 1 FROM donations d " +
+                   "WHERE d.transaction_id = 'recurring-' || p.id || '-' || TO_CHAR(p.next_payment_date, 'YYYY-MM'))",
+           nativeQuery = true)
+    int insertRecurringCharges(@Param("ids") Collection<Long> ids, @Param("billedAt") LocalDateTime billedAt,
+                               @Param("retryAt") LocalDateTime retryAt);
+
+    @Query("SELECT new org.example.dto.RecurringChargeTotal(f.id, f.charity.id, f.targetAmount, SUM(d.amount), COUNT(d)) " +
+           "FROM Donation d JOIN d.fundraising f WHERE d.recurringPaymentId IN :ids AND d.createdAt = :billedAt " +
+           "GROUP BY f.id, f.charity.id, f.targetAmount ORDER BY f.id")
+    List<RecurringChargeTotal> sumRecurringCharges(@Param("ids") Collection<Long> ids,
+                                                   @Param("billedAt") LocalDateTime billedAt);
+
+    @Query("SELECT new org.example.dto.RecurringChargeItem(d.id, d.transactionId, d.amount, d.paymentMethod) " +
+           "FROM Donation d WHERE d.recurringPaymentId IN :ids AND d.createdAt = :billedAt ORDER BY d.id")
+    List<RecurringChargeItem> findRecurringCharges(@Param("ids") Collection<Long> ids,
+                                                   @Param("billedAt") LocalDateTime billedAt);
+
+    @Query(value = "SELECT id FROM donations WHERE id IN (:ids) AND payment_status = 'PENDING' " +
+                   "ORDER BY id FOR UPDATE", nativeQuery = true)
+    List<Long> lockPendingByIds(@Param("ids") Collection<Long> ids);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Donation d SET d.paymentStatus = :status, d.paymentError = NULL, " +
+           "d.paymentAttempts = d.paymentAttempts + 1, d.nextPaymentAttemptAt = NULL " +
+           "WHERE d.id IN :ids AND d.paymentStatus = 'PENDING'")
+    int finishPayments(@Param("ids") Collection<Long> ids, @Param("status") Donation.PaymentStatus status);
+
     int countByUserId(Long userId);
     
     @Query("SELECT COALESCE(SUM(d.amount), 0) FROM Donation d WHERE d.user.id = ?1")
@@ -0,0 +1,45 @@
+package org.example.repository;
+
+import org.example.model.DonationRollup;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.LockModeType;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface DonationRollupRepository extends JpaRepository<DonationRollup, DonationRollup.Key> {
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM DonationRollup r WHERE r.scope = :scope AND r.scopeId = :scopeId " +
+           "AND r.granularity = :granularity AND r.bucketStart = :bucketStart")
+    Optional<DonationRollup> findForUpdate(@Param("scope") DonationRollup.Scope scope,
+                                           @Param("scopeId") Long scopeId,
+                                           @Param("granularity") DonationRollup.Granularity granularity,
+                                           @Param("bucketStart") LocalDateTime bucketStart);
+
+    // Часовые и дневные корзины диапазона одним проходом по idx_donation_rollups_range
+    @Query("SELECT r FROM DonationRollup r WHERE r.scope = :scope AND r.scopeId = :scopeId " +
+           "AND r.bucketStart >= :from AND r.bucketStart < :to ORDER BY r.bucketStart")
+    List<DonationRollup> findRange(@Param("scope") DonationRollup.Scope scope,
+                                   @Param("scopeId") Long scopeId,
+                                   @Param("from") LocalDateTime from,
+                                   @Param("to") LocalDateTime to);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM DonationRollup r WHERE r.granularity = 'HOUR' AND r.bucketStart < :before " +
+           "ORDER BY r.scope, r.scopeId, r.bucketStart")
+    List<DonationRollup> findHourlyBefore(@Param("before") LocalDateTime before,
+                                          Pageable pageable);
+
+    @Modifying
+    @Query("DELETE FROM DonationRollup r")
+    int deleteAllRows();
+}
@@ -1,17 +1,84 @@
 package org.example.repository;
 
+import org.example.dto.FundraisingSummary;
 import org.example.model.Fundraising;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface FundraisingRepository extends JpaRepository<Fundraising, Long> {
     List<Fundraising> findByCharityId(Long charityId);
+    List<Fundraising> findByCharityIdInOrderByIdAsc(Collection<Long> charityIds);
     List<Fundraising> findByActiveTrue();
     List<Fundraising> findByCompletedTrue();
     List<Fundraising> findByActiveTrueAndCompletedFalse();
     Optional<Fundraising> findByCharityIdAndTargetAmount(Long charityId, BigDecimal targetAmount);
+
+    @Query("SELECT f.version FROM Fundraising f WHERE f.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Fundraising f SET f.version = f.version + 1 WHERE f.id = :id")
+    int incrementVersion(@Param("id") Long id);
+
+    // Зачисление уже проведенных пожертвований: лимит цели учитывает и зарезервированное
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Fundraising f SET f.currentAmount = f.currentAmount + :amount " +
+           "WHERE f.id = :id AND f.active = true " +
+           "AND f.currentAmount + f.reservedAmount + :amount <= f.targetAmount")
+    int addDonationAmountWithinTarget(@Param("id") Long id, @Param("amount") BigDecimal amount);
+
+    // Резерв под пожертвование с необработанным платежом; лимит цели учитывает и уже зарезервированное
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Fundraising f SET f.reservedAmount = f.reservedAmount + :amount " +
+           "WHERE f.id = :id AND f.active = true " +
+           "AND f.currentAmount + f.reservedAmount + :amount <= f.targetAmount")
+    int reserveDonationAmount(@Param("id") Long id, @Param("amount") BigDecimal amount);
+
+    // Резерв под списания регулярных платежей: подписка уже оформлена, поэтому без проверки лимита
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Fundraising f SET f.reservedAmount = f.reservedAmount + :amount WHERE f.id = :id")
+    int addReservedAmount(@Param("id") Long id, @Param("amount") BigDecimal amount);
+
+    // Подтвержденный платеж переносит сумму из резерва в собранную
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Fundraising f SET f.currentAmount = f.currentAmount + :amount, " +
+           "f.reservedAmount = f.reservedAmount - :amount WHERE f.id = :id")
+    int settleReservedAmount(@Param("id") Long id, @Param("amount") BigDecimal amount);
+
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Fundraising f SET f.reservedAmount = f.reservedAmount - :amount WHERE f.id = :id")
+    int releaseReservedAmount(@Param("id") Long id, @Param("amount") BigDecimal amount);
+
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Fundraising f SET f.currentAmount = f.currentAmount + :amount WHERE f.id = :id")
+    int incrementCurrentAmount(@Param("id") Long id, @Param("amount") BigDecimal amount);
+
+    // Блокирует кампании в порядке ID, чтобы параллельные пакеты не взаимоблокировались
+    @Query(value = "SELECT id FROM fundraisings WHERE id IN (:ids) ORDER BY id FOR UPDATE", nativeQuery = true)
+    List<Long> lockByIds(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT f.id FROM Fundraising f WHERE f.charity.id = :charityId AND f.active = true")
+    List<Long> findActiveIdsByCharityId(@Param("charityId") Long charityId);
+
+    boolean existsByIdAndActiveTrue(Long id);
+
+    // Обновляет строку только для того пожертвования, которое довело сумму до цели
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Fundraising f SET f.completed = true " +
+           "WHERE f.id = :id AND f.completed = false AND f.currentAmount >= f.targetAmount")
+    int markCompletedIfTargetReached(@Param("id") Long id);
+
+    @Query("SELECT new org.example.dto.FundraisingSummary(f.id, c.id, c.name, f.title, f.targetAmount, " +
+           "f.currentAmount, f.imageUrl, f.active, f.completed, f.startDate, f.endDate) " +
+           "FROM Fundraising f JOIN f.charity c WHERE f.id > :after ORDER BY f.id")
+    List<FundraisingSummary> findSummariesAfter(@Param("after") Long after, Pageable pageable);
 } 
\ No newline at end of file
@@ -0,0 +1,81 @@
+package org.example.repository;
+
+import org.example.model.FundraisingStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Repository
+public interface FundraisingStatsRepository extends JpaRepository<FundraisingStats, Long> {
+
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE FundraisingStats s SET s.totalAmount = s.totalAmount + :amount, " +
+           "s.donorCount = s.donorCount + :donors, s.recurringCount = s.recurringCount + :recurring, " +
+           "s.donationCount = s.donationCount + :donations, s.updatedAt = :now " +
+           "WHERE s.fundraisingId = :fundraisingId")
+    int applyDelta(@Param("fundraisingId") Long fundraisingId, @Param("amount") BigDecimal amount,
+                   @Param("donors") long donors, @Param("recurring") long recurring,
+                   @Param("donations") long donations, @Param("now") LocalDateTime now);
+
+    // Первая строка кампании, посчитанная из donations; если ее уже вставила параллельная
+    // транзакция, ничего не меняется и возвращается 0
+    @Modifying(flushAutomatically = true)
+    @Query(value = "INSERT INTO fundraising_stats " +
+            "(fundraising_id, charity_id, total_amount, donor_count, recurring_count, donation_count, updated_at) " +
+            "SELECT :fundraisingId, :charityId, " +
+            "COALESCE(SUM(CASE WHEN d.payment_status = 'COMPLETED' THEN d.amount ELSE 0 END), 0), " +
+            "COUNT(DISTINCT d.user_id), " +
+            "COALESCE(SUM(CASE WHEN d.is_recurring THEN 1 ELSE 0 END), 0), " +
+            "COUNT(d.id), :now " +
+            "FROM donations d WHERE d.fundraising_id = :fundraisingId AND d.totals_applied = true " +
+            "ON CONFLICT DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(@Param("fundraisingId") Long fundraisingId, @Param("charityId") Long charityId,
+                       @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("DELETE FROM FundraisingStats s WHERE s.fundraisingId = :fundraisingId")
+    int deleteByFundraisingId(@Param("fundraisingId") Long fundraisingId);
+
+    @Modifying
+    @Query("DELETE FROM FundraisingStats s WHERE s.charityId = :charityId")
+    int deleteByCharityId(@Param("charityId") Long charityId);
+
+    @Modifying
+    @Query(value = "DELETE FROM fundraising_stats", nativeQuery = true)
+    int deleteAllRows();
+
+    // Полный пересчет из таблицы donations
+    @Modifying(flushAutomatically = true)
+    @Query(value = "INSERT INTO fundraising_stats " +
+            "(fundraising_id, charity_id, total_amount, donor_count, recurring_count, donation_count, updated_at) " +
+            "SELECT f.id, f.charity_id, " +
+            "COALESCE(SUM(CASE WHEN d.payment_status = 'COMPLETED' THEN d.amount ELSE 0 END), 0), " +
+            "COUNT(DISTINCT d.user_id), " +
+            "COALESCE(SUM(CASE WHEN d.is_recurring THEN 1 ELSE 0 END), 0), " +
+            "COUNT(d.id), CURRENT_TIMESTAMP " +
+            "FROM fundraisings f LEFT JOIN donations d ON d.fundraising_id = f.id AND d.totals_applied = true " +
+            "GROUP BY f.id, f.charity_id", nativeQuery = true)
+    int rebuildAll();
+
+    // Количество строк, расходящихся с пересчетом из donations (включая лишние строки
+    // и отсутствующие строки для кампаний, у которых есть пожертвования)
+    @Query(value = "SELECT " +
+            "(SELECT COUNT(*) FROM (" +
+            "  SELECT f.id AS fundraising_id, " +
+            "  COALESCE(SUM(CASE WHEN d.payment_status = 'COMPLETED' THEN d.amount ELSE 0 END), 0) AS total_amount, " +
+            "  COUNT(DISTINCT d.user_id) AS donor_count, " +
+            "  COALESCE(SUM(CASE WHEN d.is_recurring THEN 1 ELSE 0 END), 0) AS recurring_count, " +
+            "  COUNT(d.id) AS donation_count " +
+            "  FROM fundraisings f LEFT JOIN donations d ON d.fundraising_id = f.id AND d.totals_applied = true GROUP BY f.id" +
+            ") r LEFT JOIN fundraising_stats s ON s.fundraising_id = r.fundraising_id " +
+            "WHERE (s.fundraising_id IS NULL AND r.donation_count > 0) OR s.total_amount <> r.total_amount OR s.donor_count <> r.donor_count " +
+            "OR s.recurring_count <> r.recurring_count OR s.donation_count <> r.donation_count) + " +
+            "(SELECT COUNT(*) FROM fundraising_stats s " +
+            "WHERE NOT EXISTS (SELECT 1 FROM fundraisings f WHERE f.id = s.fundraising_id))",
+            nativeQuery = true)
+    long countMismatches();
+}
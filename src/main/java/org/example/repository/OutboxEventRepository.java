@@ -0,0 +1,50 @@
+package org.example.repository;
+
+import org.example.model.OutboxEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    // Готовые к обработке события. Событие ждет, пока более раннее событие того же агрегата
+    // отложено до повтора или завершилось ошибкой (FAILED), чтобы не обогнать его
+    @Query("SELECT e FROM OutboxEvent e WHERE e.status = 'PENDING' AND e.nextAttemptAt <= :now " +
+           "AND NOT EXISTS (SELECT w.id FROM OutboxEvent w WHERE w.aggregateId = e.aggregateId AND w.id < e.id " +
+           "AND (w.status = 'FAILED' OR (w.status = 'PENDING' AND w.nextAttemptAt > :now))) " +
+           "ORDER BY e.id")
+    List<OutboxEvent> findReady(@Param("now") LocalDateTime now, Pageable pageable);
+
+    // Захватывает события перед обработкой; уже обработанные другим экземпляром не вернутся
+    @Query(value = "SELECT id FROM outbox_events WHERE id IN (:ids) AND status = 'PENDING' " +
+                   "ORDER BY id FOR UPDATE", nativeQuery = true)
+    List<Long> lockPending(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("DELETE FROM OutboxEvent e WHERE e.id IN :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("UPDATE OutboxEvent e SET e.status = 'PENDING', e.attempts = 0, e.nextAttemptAt = :now, " +
+           "e.lastError = NULL WHERE e.status = 'FAILED'")
+    int resetFailed(@Param("now") LocalDateTime now);
+
+    // События создания для пачки пожертвований, подтвержденных одним запросом
+    @Modifying
+    @Query(value = "INSERT INTO outbox_events (event_type, aggregate_id, entity_id, status, attempts, next_attempt_at, created_at) " +
+                   "SELECT 'DONATION_CREATED', d.fundraising_id, d.id, 'PENDING', 0, :now, :now FROM donations d " +
+                   "WHERE d.id IN (:ids) ORDER BY d.id", nativeQuery = true)
+    int insertDonationCreatedEvents(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
+    long countByStatus(OutboxEvent.Status status);
+
+    boolean existsByEventTypeAndEntityId(OutboxEvent.Type eventType, Long entityId);
+}
@@ -0,0 +1,24 @@
+package org.example.repository;
+
+import org.example.model.RecurringBillingNode;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface RecurringBillingNodeRepository extends JpaRepository<RecurringBillingNode, String> {
+
+    @Modifying
+    @Query("UPDATE RecurringBillingNode n SET n.heartbeatAt = :now WHERE n.nodeId = :node")
+    int heartbeat(@Param("node") String node, @Param("now") LocalDateTime now);
+
+    long countByHeartbeatAtAfter(LocalDateTime since);
+
+    @Modifying
+    @Query("DELETE FROM RecurringBillingNode n WHERE n.heartbeatAt < :before")
+    int deleteStale(@Param("before") LocalDateTime before);
+}
@@ -0,0 +1,52 @@
+package org.example.repository;
+
+import org.example.model.RecurringPartitionLease;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface RecurringPartitionLeaseRepository extends JpaRepository<RecurringPartitionLease, Integer> {
+
+    @Query("SELECT l.partitionNo FROM RecurringPartitionLease l")
+    List<Integer> findAllPartitionNos();
+
+    @Query("SELECT l.partitionNo FROM RecurringPartitionLease l WHERE l.ownerNode = :node AND l.leaseUntil > :now " +
+           "AND l.partitionNo < :partitions ORDER BY l.partitionNo")
+    List<Integer> findOwned(@Param("node") String node, @Param("now") LocalDateTime now,
+                            @Param("partitions") int partitions);
+
+    // Свободные разделы и разделы, чья аренда истекла (узел-владелец упал или остановлен)
+    @Query("SELECT l FROM RecurringPartitionLease l WHERE (l.ownerNode IS NULL OR l.leaseUntil <= :now) " +
+           "AND l.partitionNo < :partitions ORDER BY l.partitionNo")
+    List<RecurringPartitionLease> findClaimable(@Param("now") LocalDateTime now, @Param("partitions") int partitions);
+
+    // Захват раздела одним условным UPDATE: из двух узлов раздел получит только один
+    @Modifying
+    @Query("UPDATE RecurringPartitionLease l SET l.ownerNode = :node, l.leaseUntil = :leaseUntil, l.updatedAt = :now " +
+           "WHERE l.partitionNo = :partitionNo AND (l.ownerNode IS NULL OR l.leaseUntil <= :now)")
+    int claim(@Param("partitionNo") Integer partitionNo, @Param("node") String node,
+              @Param("now") LocalDateTime now, @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    // Продление аренды; истекшие разделы не продлеваются - их мог забрать другой узел
+    @Modifying
+    @Query("UPDATE RecurringPartitionLease l SET l.leaseUntil = :leaseUntil, l.updatedAt = :now " +
+           "WHERE l.ownerNode = :node AND l.leaseUntil > :now")
+    int renew(@Param("node") String node, @Param("now") LocalDateTime now, @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    @Modifying
+    @Query("UPDATE RecurringPartitionLease l SET l.ownerNode = NULL, l.leaseUntil = NULL, l.updatedAt = :now " +
+           "WHERE l.partitionNo IN :partitionNos AND l.ownerNode = :node")
+    int release(@Param("partitionNos") List<Integer> partitionNos, @Param("node") String node,
+                @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE RecurringPartitionLease l SET l.ownerNode = NULL, l.leaseUntil = NULL, l.updatedAt = :now " +
+           "WHERE l.ownerNode = :node")
+    int releaseAll(@Param("node") String node, @Param("now") LocalDateTime now);
+}
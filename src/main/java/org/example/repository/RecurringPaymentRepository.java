@@ -1,9 +1,21 @@
 package org.example.repository;
 
+import org.example.dto.RecurringForecastRow;
+import org.example.dto.RecurringSchedule;
 import org.example.model.RecurringPayment;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -14,4 +26,61 @@ public interface RecurringPaymentRepository extends JpaRepository<RecurringPayme
     List<RecurringPayment> findByIsActiveTrueAndNextPaymentDateBefore(LocalDateTime date);
     int countByUserIdAndIsActiveTrue(Long userId);
     List<RecurringPayment> findByUserIdAndIsActiveTrue(Long userId);
-} 
\ No newline at end of file
+
+    // Порция платежей к списанию из арендованных узлом разделов (остаток от деления ID на число разделов):
+    // SELECT ... FOR UPDATE SKIP LOCKED (таймаут блокировки -2 в Hibernate). Строки, захваченные
+    // другим экземпляром, пропускаются, а не ожидаются
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "javax.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT p FROM RecurringPayment p WHERE p.isActive = true AND p.nextPaymentDate <= :now " +
+           "AND MOD(p.id, :partitionCount) IN :partitions ORDER BY p.nextPaymentDate, p.id")
+    List<RecurringPayment> claimDue(@Param("now") LocalDateTime now, @Param("partitionCount") int partitionCount,
+                                    @Param("partitions") Collection<Integer> partitions, Pageable pageable);
+
+    // Подписки, срок которых отсчитало колесо таймеров: та же блокировка SKIP LOCKED и проверка срока,
+    // поэтому подписка, уже списанная другим узлом или общим проходом, повторно не попадет
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "javax.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT p FROM RecurringPayment p WHERE p.id IN :ids AND p.isActive = true AND p.nextPaymentDate <= :now " +
+           "AND MOD(p.id, :partitionCount) IN :partitions ORDER BY p.id")
+    List<RecurringPayment> claimDueByIds(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now,
+                                         @Param("partitionCount") int partitionCount,
+                                         @Param("partitions") Collection<Integer> partitions);
+
+    @Query("SELECT new org.example.dto.RecurringSchedule(p.id, p.nextPaymentDate, p.isActive) " +
+           "FROM RecurringPayment p WHERE p.id IN :ids")
+    List<RecurringSchedule> findSchedulesByIds(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT new org.example.dto.RecurringSchedule(p.id, p.nextPaymentDate, p.isActive) " +
+           "FROM RecurringPayment p WHERE p.isActive = true AND p.id > :afterId ORDER BY p.id")
+    List<RecurringSchedule> findActiveSchedulesAfter(@Param("afterId") long afterId, Pageable pageable);
+
+    // Подписки, измененные с момента since, в том числе на других узлах
+    @Query("SELECT new org.example.dto.RecurringSchedule(p.id, p.nextPaymentDate, p.isActive) " +
+           "FROM RecurringPayment p WHERE p.updatedAt >= :since")
+    List<RecurringSchedule> findSchedulesUpdatedSince(@Param("since") LocalDateTime since);
+
+    @Query("SELECT new org.example.dto.RecurringForecastRow(p.id, p.fundraising.id, p.amount, p.nextPaymentDate, p.isActive) " +
+           "FROM RecurringPayment p WHERE p.isActive = true AND p.id > :afterId ORDER BY p.id")
+    List<RecurringForecastRow> findActiveForecastRowsAfter(@Param("afterId") long afterId, Pageable pageable);
+
+    @Query("SELECT new org.example.dto.RecurringForecastRow(p.id, p.fundraising.id, p.amount, p.nextPaymentDate, p.isActive) " +
+           "FROM RecurringPayment p WHERE p.id IN :ids")
+    List<RecurringForecastRow> findForecastRowsByIds(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT new org.example.dto.RecurringForecastRow(p.id, p.fundraising.id, p.amount, p.nextPaymentDate, p.isActive) " +
+           "FROM RecurringPayment p WHERE p.updatedAt >= :since")
+    List<RecurringForecastRow> findForecastRowsUpdatedSince(@Param("since") LocalDateTime since);
+
+    // Подписки захваченной порции, чьи кампании больше не принимают пожертвования
+    @Modifying
+    @Query("UPDATE RecurringPayment p SET p.isActive = false, p.updatedAt = :now WHERE p.id IN :ids " +
+           "AND p.fundraising.id IN (SELECT f.id FROM Fundraising f WHERE f.active = false)")
+    int deactivateForInactiveFundraisings(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE RecurringPayment p SET p.nextPaymentDate = :nextPaymentDate, p.updatedAt = :now " +
+           "WHERE p.id IN :ids AND p.isActive = true")
+    int advanceNextPaymentDate(@Param("ids") Collection<Long> ids, @Param("nextPaymentDate") LocalDateTime nextPaymentDate,
+                               @Param("now") LocalDateTime now);
+}
@@ -0,0 +1,30 @@
+package org.example.repository;
+
+import org.example.model.RefundJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface RefundJobRepository extends JpaRepository<RefundJob, Long> {
+
+    @Query("SELECT j.id FROM RefundJob j WHERE j.status = 'RUNNING' " +
+           "AND (j.lockedUntil IS NULL OR j.lockedUntil <= :now) ORDER BY j.id")
+    List<Long> findRunnableIds(@Param("now") LocalDateTime now);
+
+    // Захват задачи одним обработчиком; аренду продлевает каждая сохраненная порция
+    @Modifying
+    @Query("UPDATE RefundJob j SET j.lockedUntil = :leaseUntil WHERE j.id = :id AND j.status = 'RUNNING' " +
+           "AND (j.lockedUntil IS NULL OR j.lockedUntil <= :now)")
+    int claim(@Param("id") Long id, @Param("now") LocalDateTime now, @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    Optional<RefundJob> findFirstByFundraisingIdAndStatus(Long fundraisingId, RefundJob.Status status);
+
+    Optional<RefundJob> findFirstByFundraisingIdOrderByIdDesc(Long fundraisingId);
+}
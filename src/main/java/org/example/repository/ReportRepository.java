@@ -1,13 +1,56 @@
 package org.example.repository;
 
+import org.example.dto.ReportSummary;
 import org.example.model.Report;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface ReportRepository extends JpaRepository<Report, Long> {
     List<Report> findByFundraisingIdOrderByReportDateDesc(Long fundraisingId);
     boolean existsByFundraisingId(Long fundraisingId);
-} 
\ No newline at end of file
+
+    // Отчеты всех кампаний организации проекцией, без сущностей кампаний и их коллекций, от новых
+    // к старым; (reportDate, id) - ключ keyset-пагинации
+    @Query("SELECT new org.example.dto.ReportSummary(r.id, f.id, f.title, r.title, r.description, r.spentAmount, " +
+           "r.reportDate, r.createdAt, r.verified) FROM Report r JOIN r.fundraising f WHERE f.charity.id = :charityId " +
+           "ORDER BY r.reportDate DESC, r.id DESC")
+    List<ReportSummary> findCharityReportSummaries(@Param("charityId") Long charityId, Pageable pageable);
+
+    @Query("SELECT new org.example.dto.ReportSummary(r.id, f.id, f.title, r.title, r.description, r.spentAmount, " +
+           "r.reportDate, r.createdAt, r.verified) FROM Report r JOIN r.fundraising f WHERE f.charity.id = :charityId " +
+           "AND (r.reportDate < :beforeDate OR (r.reportDate = :beforeDate AND r.id < :beforeId)) " +
+           "ORDER BY r.reportDate DESC, r.id DESC")
+    List<ReportSummary> findCharityReportSummariesBefore(@Param("charityId") Long charityId,
+                                                         @Param("beforeDate") LocalDateTime beforeDate,
+                                                         @Param("beforeId") Long beforeId, Pageable pageable);
+
+    @Query("SELECT new org.example.dto.ReportSummary(r.id, f.id, f.title, r.title, r.description, r.spentAmount, " +
+           "r.reportDate, r.createdAt, r.verified) FROM Report r JOIN r.fundraising f WHERE f.id = :fundraisingId " +
+           "ORDER BY r.reportDate DESC, r.id DESC")
+    List<ReportSummary> findFundraisingReportSummaries(@Param("fundraisingId") Long fundraisingId);
+
+    // Документы отчетов страницы: пары [ID отчета, значение]
+    @Query("SELECT r.id, u FROM Report r JOIN r.documentUrls u WHERE r.id IN :ids AND u IS NOT NULL")
+    List<Object[]> findDocumentUrls(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT r.id, d FROM Report r JOIN r.documentDescriptions d WHERE r.id IN :ids AND d IS NOT NULL")
+    List<Object[]> findDocumentDescriptions(@Param("ids") Collection<Long> ids);
+
+    // Отпечаток списка отчетов кампании: количество, сумма версий и последний ID
+    @Query("SELECT CONCAT(COUNT(r), '-', COALESCE(SUM(r.version), 0), '-', COALESCE(MAX(r.id), 0)) " +
+           "FROM Report r WHERE r.fundraising.id = :fundraisingId")
+    String getListFingerprint(@Param("fundraisingId") Long fundraisingId);
+
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Report r SET r.version = r.version + 1 WHERE r.id = :id")
+    int incrementVersion(@Param("id") Long id);
+}
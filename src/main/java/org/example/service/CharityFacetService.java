@@ -0,0 +1,172 @@
+package org.example.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.dto.CharityCategoryView;
+import org.example.dto.CharityFacetView;
+import org.example.dto.CharityFacets;
+import org.example.event.CharityChangedEvent;
+import org.example.repository.CharityRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Инвертированный индекс "категория -> битовая карта ID организаций" для фасетного поиска.
+ * Строится при старте из charity_categories и после коммита каждого изменения организации
+ * перечитывает ее строку, поэтому повторная или запоздалая переиндексация безопасна.
+ */
+@Slf4j
+@Service
+public class CharityFacetService {
+
+    private static final int MAX_IDS = 100;
+
+    private final CharityRepository charityRepository;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, BitSet> byCategory = new HashMap<>();
+    // Верифицированные и активные организации - только они попадают в выдачу
+    private final BitSet visible = new BitSet();
+    private final Map<Long, Set<String>> categoriesById = new HashMap<>();
+
+    public CharityFacetService(CharityRepository charityRepository) {
+        this.charityRepository = charityRepository;
+    }
+
+    public enum Mode { AND, OR }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        List<CharityFacetView> rows = charityRepository.findAllFacetRows();
+        List<CharityCategoryView> categories = charityRepository.findAllCategories();
+
+        lock.writeLock().lock();
+        try {
+            byCategory.clear();
+            visible.clear();
+            categoriesById.clear();
+            rows.forEach(row -> {
+                if (isVisible(row)) {
+                    visible.set(bit(row.getCharityId()));
+                }
+            });
+            categories.forEach(row -> addCategory(row.getCharityId(), row.getCategory()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Фасетный индекс построен: {} организаций, {} категорий", rows.size(), byCategory.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCharityChanged(CharityChangedEvent event) {
+        reindex(event.getCharityId());
+    }
+
+    public void reindex(Long charityId) {
+        CharityFacetView row = charityRepository.findFacetRowById(charityId).orElse(null);
+        List<CharityCategoryView> categories = row != null
+                ? charityRepository.findCategoriesByCharityIds(Collections.singletonList(charityId))
+                : Collections.emptyList();
+
+        lock.writeLock().lock();
+        try {
+            int bit = bit(charityId);
+            Set<String> previous = categoriesById.remove(charityId);
+            if (previous != null) {
+                previous.forEach(category -> {
+                    BitSet ids = byCategory.get(category);
+                    ids.clear(bit);
+                    if (ids.isEmpty()) {
+                        byCategory.remove(category);
+                    }
+                });
+            }
+            visible.set(bit, row != null && isVisible(row));
+            categories.forEach(view -> addCategory(charityId, view.getCategory()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.debug("Организация {} переиндексирована в фасетном индексе", charityId);
+    }
+
+    public CharityFacets getFacets(Set<String> categories, String mode, int limit) {
+        Mode filterMode = parseMode(mode);
+        int maxIds = Math.max(0, Math.min(limit, MAX_IDS));
+
+        lock.readLock().lock();
+        try {
+            BitSet matched = (BitSet) visible.clone();
+            if (!categories.isEmpty()) {
+                BitSet filter = filterMode == Mode.AND ? null : new BitSet();
+                for (String category : categories) {
+                    BitSet ids = byCategory.getOrDefault(category, new BitSet());
+                    if (filter == null) {
+                        filter = (BitSet) ids.clone();
+                    } else if (filterMode == Mode.AND) {
+                        filter.and(ids);
+                    } else {
+                        filter.or(ids);
+                    }
+                }
+                matched.and(filter);
+            }
+
+            Map<String, Long> counts = new TreeMap<>();
+            byCategory.forEach((category, ids) -> {
+                BitSet inCategory = (BitSet) ids.clone();
+                inCategory.and(matched);
+                if (!inCategory.isEmpty()) {
+                    counts.put(category, (long) inCategory.cardinality());
+                }
+            });
+
+            List<Long> charityIds = new ArrayList<>();
+            for (int i = matched.nextSetBit(0); i >= 0 && charityIds.size() < maxIds; i = matched.nextSetBit(i + 1)) {
+                charityIds.add((long) i);
+            }
+            return new CharityFacets(filterMode.name(), matched.cardinality(), counts, charityIds);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Mode parseMode(String mode) {
+        if (mode == null || mode.isBlank()) {
+            return Mode.AND;
+        }
+        try {
+            return Mode.valueOf(mode.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            log.warn("Неизвестный режим фасетного фильтра: {}", mode);
+            throw new RuntimeException("Режим фильтра должен быть AND или OR");
+        }
+    }
+
+    private void addCategory(Long charityId, String category) {
+        byCategory.computeIfAbsent(category, key -> new BitSet()).set(bit(charityId));
+        categoriesById.computeIfAbsent(charityId, key -> new HashSet<>()).add(category);
+    }
+
+    private boolean isVisible(CharityFacetView row) {
+        return Boolean.TRUE.equals(row.getVerified()) && Boolean.TRUE.equals(row.getActive());
+    }
+
+    // ID организаций выдаются последовательностью и помещаются в int
+    private int bit(Long charityId) {
+        return Math.toIntExact(charityId);
+    }
+}
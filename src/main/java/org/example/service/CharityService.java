@@ -4,19 +4,26 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.example.dto.CharityRequest;
 import org.example.dto.CharityResponse;
+import org.example.dto.CharitySummary;
+import org.example.dto.CursorPage;
 import org.example.dto.DocumentDTO;
 import org.example.dto.FundraisingResponse;
+import org.example.event.CharityChangedEvent;
+import org.example.event.FundraisingChangedEvent;
 import org.example.model.Charity;
+import org.example.model.CharityStats;
 import org.example.model.Document;
 import org.example.model.Fundraising;
 import org.example.model.User;
-import org.example.model.Donation;
 import org.example.repository.CharityRepository;
 import org.example.repository.DonationRepository;
 import org.example.repository.FundraisingRepository;
 import org.example.repository.UserRepository;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 import java.io.IOException;
 import java.math.BigDecimal;
@@ -27,9 +34,8 @@ import java.nio.file.StandardCopyOption;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -38,10 +44,16 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class CharityService {
 
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final CharityRepository charityRepository;
     private final FundraisingRepository fundraisingRepository;
     private final DonationRepository donationRepository;
     private final UserRepository userRepository;
+    private final DonationStatsService donationStatsService;
+    private final ResponseCacheService responseCacheService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
 
     @Transactional
     public CharityResponse createCharity(CharityRequest request, Long userId) {
@@ -153,26 +165,52 @@ public class CharityService {
         generalFund = fundraisingRepository.save(generalFund);
         log.info("Основной фандрайзинг создан: {}", generalFund.getId());
 
+        eventPublisher.publishEvent(new CharityChangedEvent(charity.getId()));
+        eventPublisher.publishEvent(new FundraisingChangedEvent(generalFund.getId(), charity.getId()));
         return convertToResponse(charity);
     }
 
     @Transactional(readOnly = true)
     public List<CharityResponse> getAllCharities() {
         log.debug("Получение списка всех благотворительных организаций");
-        return charityRepository.findAll().stream()
-                .map(this::convertToResponse)
-                .collect(Collectors.toList());
+        return convertToResponses(charityRepository.findAll());
     }
 
     @Transactional(readOnly = true)
+    public CursorPage<CharitySummary> getCharitySummaries(Long after, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        log.debug("Получение страницы организаций после ID {} (лимит {})", after, pageSize);
+
+        // Запрашиваем на одну запись больше, чтобы понять, есть ли следующая страница
+        List<CharitySummary> summaries = charityRepository.findSummariesAfter(
+                after != null ? after : 0L, PageRequest.of(0, pageSize + 1));
+        boolean hasMore = summaries.size() > pageSize;
+        if (hasMore) {
+            summaries = summaries.subList(0, pageSize);
+        }
+
+        if (!summaries.isEmpty()) {
+            Map<Long, CharitySummary> byId = summaries.stream()
+                    .collect(Collectors.toMap(CharitySummary::getId, summary -> summary));
+            charityRepository.findCategoriesByCharityIds(byId.keySet())
+                    .forEach(row -> byId.get(row.getCharityId()).getCategories().add(row.getCategory()));
+        }
+
+        String nextCursor = hasMore ? String.valueOf(summaries.get(summaries.size() - 1).getId()) : null;
+        return new CursorPage<>(summaries, nextCursor);
+    }
+
+    // Без @Transactional: при попадании в кэш соединение с базой не берется
     public CharityResponse getCharityById(Long id) {
         log.debug("Поиск благотворительной организации по ID: {}", id);
-        Charity charity = charityRepository.findById(id)
-                .orElseThrow(() -> {
-                    log.error("Благотворительная организация с ID {} не найдена", id);
-                    return new RuntimeException("Благотворительная организация не найдена");
-                });
-        return convertToResponse(charity);
+        return responseCacheService.getCharity(id, () -> transactionTemplate.execute(status -> {
+            Charity charity = charityRepository.findById(id)
+                    .orElseThrow(() -> {
+                        log.error("Благотворительная организация с ID {} не найдена", id);
+                        return new RuntimeException("Благотворительная организация не найдена");
+                    });
+            return convertToResponse(charity);
+        }));
     }
 
     @Transactional
@@ -208,6 +246,7 @@ public class CharityService {
         charity.setContactAddress(request.getContactAddress());
 
         charity = charityRepository.save(charity);
+        eventPublisher.publishEvent(new CharityChangedEvent(charity.getId()));
         log.info("Данные благотворительной организации успешно обновлены: {}", charity.getId());
         
         return convertToResponse(charity);
@@ -216,9 +255,7 @@ public class CharityService {
     @Transactional(readOnly = true)
     public List<CharityResponse> getCharitiesByCategory(String category) {
         log.debug("Поиск благотворительных организаций по категории: {}", category);
-        return charityRepository.findByCategory(category).stream()
-                .map(this::convertToResponse)
-                .collect(Collectors.toList());
+        return convertToResponses(charityRepository.findByCategory(category));
     }
 
     @Transactional
@@ -244,10 +281,15 @@ public class CharityService {
         }
 
         // Удаляем все фандрайзинговые кампании
-        fundraisingRepository.deleteAll(fundraisingRepository.findByCharityId(id));
+        List<Fundraising> fundraisings = fundraisingRepository.findByCharityId(id);
+        fundraisingRepository.deleteAll(fundraisings);
         
         // Удаляем сам фонд
         charityRepository.delete(charity);
+        donationStatsService.removeCharity(id);
+
+        fundraisings.forEach(f -> eventPublisher.publishEvent(new FundraisingChangedEvent(f.getId(), id)));
+        eventPublisher.publishEvent(new CharityChangedEvent(id));
         log.info("Благотворительная организация {} успешно удалена", id);
     }
 
@@ -263,6 +305,7 @@ public class CharityService {
 
         charity.setVerified(true);
         charity = charityRepository.save(charity);
+        eventPublisher.publishEvent(new CharityChangedEvent(id));
         log.info("Благотворительная организация {} успешно верифицирована", id);
         
         return convertToResponse(charity);
@@ -330,6 +373,7 @@ public class CharityService {
             // Обновляем список документов в самом фонде
             charity.getDocuments().addAll(uploadedDocuments);
             charityRepository.save(charity);
+            eventPublisher.publishEvent(new FundraisingChangedEvent(generalFund.getId(), charityId));
 
             log.info("Документы успешно добавлены в фонд {}", charityId);
             return convertToResponse(charity);
@@ -370,6 +414,35 @@ public class CharityService {
     }
 
     private CharityResponse convertToResponse(Charity charity) {
+        return convertToResponses(List.of(charity)).get(0);
+    }
+
+    private List<CharityResponse> convertToResponses(List<Charity> charities) {
+        if (charities.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        List<Long> charityIds = charities.stream()
+                .map(Charity::getId)
+                .collect(Collectors.toList());
+
+        // Фандрайзинги и статистика загружаются для всей пачки организаций,
+        // поэтому количество запросов не зависит от числа организаций
+        Map<Long, List<Fundraising>> fundraisingsByCharity = fundraisingRepository
+                .findByCharityIdInOrderByIdAsc(charityIds).stream()
+                .collect(Collectors.groupingBy(f -> f.getCharity().getId()));
+        Map<Long, CharityStats> statsByCharity = donationStatsService.getCharityStats(charityIds).stream()
+                .collect(Collectors.toMap(CharityStats::getCharityId, stats -> stats));
+
+        return charities.stream()
+                .map(charity -> convertToResponse(charity,
+                        fundraisingsByCharity.getOrDefault(charity.getId(), List.of()),
+                        statsByCharity.get(charity.getId())))
+                .collect(Collectors.toList());
+    }
+
+    private CharityResponse convertToResponse(Charity charity, List<Fundraising> fundraisings,
+            CharityStats stats) {
         CharityResponse response = new CharityResponse();
         response.setId(charity.getId());
         response.setName(charity.getName());
@@ -393,44 +466,19 @@ public class CharityService {
                 .map(this::convertDocumentToDTO)
                 .collect(Collectors.toList()));
 
-        // Получаем все фандрайзинги для этого фонда
-        List<Fundraising> fundraisings = fundraisingRepository.findByCharityId(charity.getId());
         List<FundraisingResponse> fundraisingResponses = fundraisings.stream()
                 .map(this::convertFundraisingToResponse)
                 .collect(Collectors.toList());
         response.setFundraisings(fundraisingResponses);
 
-        // Подсчитываем статистику
-        BigDecimal totalDonations = BigDecimal.ZERO;
-        Set<Long> uniqueDonors = new HashSet<>();
-        int recurringDonationsCount = 0;
-        int completedFundraisingsCount = 0;
-
-        for (Fundraising fundraising : fundraisings) {
-            // Считаем общую сумму пожертвований
-            BigDecimal fundraisingTotal = donationRepository.getTotalAmountByFundraisingId(fundraising.getId());
-            if (fundraisingTotal != null) {
-                totalDonations = totalDonations.add(fundraisingTotal);
-            }
-
-            // Считаем уникальных доноров и регулярные пожертвования
-            List<Donation> donations = donationRepository.findByFundraisingId(fundraising.getId());
-            for (Donation donation : donations) {
-                uniqueDonors.add(donation.getUser().getId());
-                if (donation.isRecurring()) {
-                    recurringDonationsCount++;
-                }
-            }
-
-            // Считаем завершенные сборы
-            if (fundraising.isCompleted()) {
-                completedFundraisingsCount++;
-            }
-        }
+        // Статистика
+        int completedFundraisingsCount = (int) fundraisings.stream()
+                .filter(Fundraising::isCompleted)
+                .count();
 
-        response.setTotalDonations(totalDonations);
-        response.setTotalDonors((long) uniqueDonors.size());
-        response.setRecurringDonationsCount(recurringDonationsCount);
+        response.setTotalDonations(stats != null ? stats.getTotalAmount() : BigDecimal.ZERO);
+        response.setTotalDonors(stats != null ? stats.getDonorCount() : 0L);
+        response.setRecurringDonationsCount(stats != null ? (int) stats.getRecurringCount() : 0);
         response.setCompletedFundraisingsCount(completedFundraisingsCount);
 
         return response;
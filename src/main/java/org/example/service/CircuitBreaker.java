@@ -0,0 +1,82 @@
+package org.example.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Размыкатель для вызовов внешней системы. После failureThreshold ошибок подряд вызовы
+ * прекращаются на openDurationMs, затем пропускается один пробный вызов: успех замыкает
+ * цепь, ошибка снова размыкает ее.
+ */
+@Slf4j
+class CircuitBreaker {
+
+    enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openDurationMs;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    CircuitBreaker(String name, int failureThreshold, long openDurationMs) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openDurationMs = openDurationMs;
+    }
+
+    // Проверка без захвата разрешения: пока цепь разомкнута, очередь можно не опрашивать
+    synchronized boolean isCallPermitted() {
+        return state != State.OPEN || System.currentTimeMillis() - openedAt >= openDurationMs;
+    }
+
+    // Разрешение на один вызов; полученное разрешение закрывается recordSuccess, recordFailure или release
+    synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.currentTimeMillis() - openedAt < openDurationMs) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            log.info("Размыкатель {}: пробный вызов после {} мс паузы", name, openDurationMs);
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialInFlight) {
+                return false;
+            }
+            trialInFlight = true;
+        }
+        return true;
+    }
+
+    // Вызов не состоялся
+    synchronized void release() {
+        trialInFlight = false;
+    }
+
+    synchronized void recordSuccess() {
+        if (state != State.CLOSED) {
+            log.info("Размыкатель {} замкнут: внешняя система снова отвечает", name);
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        trialInFlight = false;
+    }
+
+    synchronized void recordFailure() {
+        trialInFlight = false;
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+            log.warn("Размыкатель {} разомкнут после {} ошибок подряд", name, consecutiveFailures);
+        }
+    }
+
+    synchronized State getState() {
+        return state;
+    }
+}
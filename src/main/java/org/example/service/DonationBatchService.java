@@ -0,0 +1,242 @@
+package org.example.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.dto.DonationBatchItemResult;
+import org.example.dto.DonationBatchResponse;
+import org.example.dto.DonationFeedItem;
+import org.example.dto.DonationRequest;
+import org.example.event.DonationCreatedEvent;
+import org.example.event.FundraisingChangedEvent;
+import org.example.event.GeneralFundDonationEvent;
+import org.example.model.Donation;
+import org.example.model.Fundraising;
+import org.example.model.User;
+import org.example.repository.DonationRepository;
+import org.example.repository.FundraisingRepository;
+import org.example.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import static org.example.service.DonationService.GENERAL_FUND_TARGET;
+
+/**
+ * Пакетная загрузка пожертвований (терминалы партнеров, зарплатные программы).
+ * Некорректные элементы отклоняются по отдельности, остальные вставляются JDBC-батчами,
+ * а суммы и статистика применяются одним обновлением на каждую затронутую кампанию.
+ */
+@Slf4j
+@Service
+public class DonationBatchService {
+
+    private final DonationRepository donationRepository;
+    private final FundraisingRepository fundraisingRepository;
+    private final UserRepository userRepository;
+    private final RecurringPaymentService recurringPaymentService;
+    private final DonationStatsService donationStatsService;
+    private final DonationRollupService donationRollupService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Validator validator;
+    private final int maxBatchSize;
+
+    public DonationBatchService(
+            DonationRepository donationRepository,
+            FundraisingRepository fundraisingRepository,
+            UserRepository userRepository,
+            @Lazy RecurringPaymentService recurringPaymentService,
+            DonationStatsService donationStatsService,
+            DonationRollupService donationRollupService,
+            ApplicationEventPublisher eventPublisher,
+            Validator validator,
+            @Value("${app.donations.batch-max-size:5000}") int maxBatchSize) {
+        this.donationRepository = donationRepository;
+        this.fundraisingRepository = fundraisingRepository;
+        this.userRepository = userRepository;
+        this.recurringPaymentService = recurringPaymentService;
+        this.donationStatsService = donationStatsService;
+        this.donationRollupService = donationRollupService;
+        this.eventPublisher = eventPublisher;
+        this.validator = validator;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    @Transactional
+    public DonationBatchResponse createDonations(List<DonationRequest> requests, Long userId) {
+        if (requests == null || requests.isEmpty()) {
+            throw new RuntimeException("Пакет пожертвований пуст");
+        }
+        if (requests.size() > maxBatchSize) {
+            log.warn("Пакет из {} пожертвований превышает лимит {}", requests.size(), maxBatchSize);
+            throw new RuntimeException(String.format(
+                    "Слишком много пожертвований в пакете: %d (максимум %d)", requests.size(), maxBatchSize));
+        }
+        log.info("Пакетная загрузка {} пожертвований от пользователя {}", requests.size(), userId);
+
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> {
+                    log.error("Невозможно создать пожертвования: пользователь с ID {} не найден", userId);
+                    return new RuntimeException("Пользователь не найден");
+                });
+
+        // Лимиты целевых сумм проверяются по всему пакету, поэтому кампании блокируются до проверки
+        Set<Long> fundraisingIds = requests.stream()
+                .filter(Objects::nonNull)
+                .map(DonationRequest::getFundraisingId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toCollection(TreeSet::new));
+        Map<Long, Fundraising> fundraisings = new HashMap<>();
+        if (!fundraisingIds.isEmpty()) {
+            fundraisingRepository.lockByIds(fundraisingIds);
+            fundraisingRepository.findAllById(fundraisingIds).forEach(f -> fundraisings.put(f.getId(), f));
+        }
+        Map<Long, Optional<Fundraising>> generalFunds = new HashMap<>();
+        Map<Long, BigDecimal> remainingAmounts = new HashMap<>();
+
+        List<DonationBatchItemResult> results = new ArrayList<>(requests.size());
+        List<Donation> created = new ArrayList<>();
+        List<DonationBatchItemResult> createdResults = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            DonationRequest request = requests.get(i);
+            String error = validate(request);
+            Fundraising fundraising = null;
+            if (error == null) {
+                fundraising = request.getFundraisingId() != null
+                        ? fundraisings.get(request.getFundraisingId())
+                        : generalFunds.computeIfAbsent(request.getCharityId(), charityId -> fundraisingRepository
+                                .findByCharityIdAndTargetAmount(charityId, GENERAL_FUND_TARGET)).orElse(null);
+                error = checkFundraising(request, fundraising, remainingAmounts);
+            }
+
+            DonationBatchItemResult result = new DonationBatchItemResult(i, "REJECTED", null, error);
+            results.add(result);
+            if (error == null) {
+                result.setStatus("CREATED");
+                created.add(toDonation(request, fundraising, user));
+                createdResults.add(result);
+            }
+        }
+
+        // Все строки вставляются неучтенными: статистика ниже считает доноров до пометки пачки
+        donationRepository.saveAll(created);
+        for (int i = 0; i < created.size(); i++) {
+            createdResults.get(i).setDonationId(created.get(i).getId());
+        }
+        applyTotals(created);
+        donationRollupService.recordDonations(created);
+        created.forEach(this::publishDonationCreated);
+
+        created.stream()
+                .filter(Donation::isRecurring)
+                .forEach(donation -> recurringPaymentService.createRecurringPayment(user,
+                        donation.getFundraising().getId(), donation.getAmount(), LocalDateTime.now().getDayOfMonth()));
+
+        int accepted = created.size();
+        log.info("Пакет обработан: принято {}, отклонено {}", accepted, requests.size() - accepted);
+        return new DonationBatchResponse(accepted, requests.size() - accepted, results);
+    }
+
+    private void applyTotals(List<Donation> donations) {
+        Map<Long, List<Donation>> byFundraising = donations.stream()
+                .collect(Collectors.groupingBy(d -> d.getFundraising().getId(), LinkedHashMap::new, Collectors.toList()));
+
+        byFundraising.forEach((fundraisingId, group) -> {
+            Fundraising fundraising = group.get(0).getFundraising();
+            if (isGeneralFund(fundraising)) {
+                group.forEach(donation -> eventPublisher.publishEvent(
+                        new GeneralFundDonationEvent(fundraisingId, donation.getAmount())));
+                return;
+            }
+
+            BigDecimal total = group.stream().map(Donation::getAmount).reduce(BigDecimal.ZERO, BigDecimal::add);
+            // Лимит проверен под блокировкой строки; условный UPDATE - последняя граница против перебора цели
+            if (fundraisingRepository.addDonationAmountWithinTarget(fundraisingId, total) == 0) {
+                log.error("Пакет превышает цель кампании {} с учетом резерва: {}", fundraisingId, total);
+                throw new RuntimeException("Сумма пакета превышает оставшуюся необходимую сумму кампании");
+            }
+            donationStatsService.recordDonations(group);
+            if (fundraisingRepository.markCompletedIfTargetReached(fundraisingId) > 0) {
+                log.info("Кампания {} достигла целевой суммы при пакетной загрузке", fundraisingId);
+            }
+            eventPublisher.publishEvent(new FundraisingChangedEvent(fundraisingId, fundraising.getCharity().getId()));
+        });
+    }
+
+    private String validate(DonationRequest request) {
+        if (request == null) {
+            return "Пустой элемент пакета";
+        }
+        Set<ConstraintViolation<DonationRequest>> violations = validator.validate(request);
+        return violations.isEmpty() ? null : violations.iterator().next().getMessage();
+    }
+
+    private String checkFundraising(DonationRequest request, Fundraising fundraising,
+            Map<Long, BigDecimal> remainingAmounts) {
+        if (fundraising == null) {
+            return request.getFundraisingId() != null ? "Фандрайзинговая кампания не найдена" : "Основной фонд не найден";
+        }
+        if (!fundraising.isActive()) {
+            return "Кампания больше не принимает пожертвования";
+        }
+        if (!fundraising.getCharity().isVerified()) {
+            return "Фонд должен быть верифицирован для приема пожертвований";
+        }
+        if (isGeneralFund(fundraising)) {
+            return null;
+        }
+
+        // Зарезервированное под необработанные платежи тоже занимает цель
+        BigDecimal remaining = remainingAmounts.computeIfAbsent(fundraising.getId(),
+                id -> fundraising.getTargetAmount().subtract(fundraising.getCurrentAmount())
+                        .subtract(fundraising.getReservedAmount()).max(BigDecimal.ZERO));
+        if (request.getAmount().compareTo(remaining) > 0) {
+            return String.format(
+                    "Сумма пожертвования превышает оставшуюся необходимую сумму. Максимально возможная сумма: %s ₽",
+                    remaining.toString());
+        }
+        remainingAmounts.put(fundraising.getId(), remaining.subtract(request.getAmount()));
+        return null;
+    }
+
+    private Donation toDonation(DonationRequest request, Fundraising fundraising, User user) {
+        Donation donation = new Donation();
+        donation.setUser(user);
+        donation.setFundraising(fundraising);
+        donation.setAmount(request.getAmount());
+        donation.setMessage(request.getMessage());
+        donation.setAnonymous(request.isAnonymous());
+        donation.setCreatedAt(LocalDateTime.now());
+        donation.setPaymentStatus(Donation.PaymentStatus.COMPLETED);
+        donation.setPaymentMethod(request.getPaymentMethod());
+        donation.setRecurring(request.isRecurring());
+        donation.setRecurringInterval(request.getRecurringInterval());
+        donation.setTotalsApplied(false);
+        return donation;
+    }
+
+    private void publishDonationCreated(Donation donation) {
+        eventPublisher.publishEvent(new DonationCreatedEvent(donation.getFundraising().getId(), new DonationFeedItem(
+                donation.getId(), donation.getAmount(), donation.isAnonymous() ? null : donation.getUser().getFirstName(),
+                donation.isRecurring(), donation.getCreatedAt())));
+    }
+
+    private boolean isGeneralFund(Fundraising fundraising) {
+        return fundraising.getTargetAmount().compareTo(GENERAL_FUND_TARGET) >= 0;
+    }
+}
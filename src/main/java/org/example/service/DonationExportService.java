@@ -0,0 +1,244 @@
+package org.example.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Потоковая выгрузка пожертвований кампании или организации в CSV / NDJSON.
+ * Строки читаются однонаправленным курсором порциями по fetch-size и сразу пишутся
+ * в ответ, поэтому память не зависит от числа пожертвований. Для анонимных
+ * пожертвований имя и email донора не выгружаются.
+ */
+@Slf4j
+@Service
+public class DonationExportService {
+
+    public enum Format {
+        CSV("text/csv; charset=UTF-8", "csv"),
+        NDJSON("application/x-ndjson", "ndjson");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public static Format parse(String value) {
+            try {
+                return Format.valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException | NullPointerException e) {
+                throw new RuntimeException("Неподдерживаемый формат выгрузки: " + value + " (csv или ndjson)");
+            }
+        }
+    }
+
+    private static final String ANONYMOUS_DONOR = "Анонимный донор";
+    private static final String[] COLUMNS = {
+            "donationId", "createdAt", "fundraisingId", "fundraisingTitle", "amount", "paymentStatus",
+            "paymentMethod", "recurring", "donorName", "donorEmail", "message"
+    };
+
+    private static final String EXPORT_SQL =
+            "SELECT d.id, d.created_at, f.id AS fundraising_id, f.title, d.amount, d.payment_status, " +
+            "       d.payment_method, d.is_recurring, d.is_anonymous, u.first_name, u.last_name, u.email, d.message " +
+            "FROM donations d " +
+            "JOIN fundraisings f ON f.id = d.fundraising_id " +
+            "JOIN users u ON u.id = d.user_id ";
+
+    private final JdbcTemplate cursorTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final UserService userService;
+    private final ObjectMapper objectMapper;
+
+    public DonationExportService(
+            DataSource dataSource,
+            PlatformTransactionManager transactionManager,
+            UserService userService,
+            ObjectMapper objectMapper,
+            @Value("${app.export.fetch-size:500}") int fetchSize) {
+        this.cursorTemplate = new JdbcTemplate(dataSource);
+        this.cursorTemplate.setFetchSize(fetchSize);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.readOnlyTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.userService = userService;
+        this.objectMapper = objectMapper;
+    }
+
+    // Права проверяются до начала выгрузки, чтобы ошибка вернулась обычным ответом, а не оборванным файлом
+    public StreamingResponseBody exportFundraising(Long fundraisingId, Long userId, Format format) {
+        List<Map<String, Object>> owners = cursorTemplate.queryForList(
+                "SELECT f.created_by_user_id AS fundraising_owner, c.created_by_user_id AS charity_owner " +
+                "FROM fundraisings f JOIN charities c ON c.id = f.charity_id WHERE f.id = ?", fundraisingId);
+        if (owners.isEmpty()) {
+            throw new RuntimeException("Фандрайзинговая кампания не найдена");
+        }
+        requireAccess(userId, owners.get(0).get("fundraising_owner"), owners.get(0).get("charity_owner"));
+
+        log.info("Выгрузка пожертвований кампании {} в {} для пользователя {}", fundraisingId, format, userId);
+        return stream(EXPORT_SQL + "WHERE d.fundraising_id = ? ORDER BY d.id", fundraisingId, format);
+    }
+
+    public StreamingResponseBody exportCharity(Long charityId, Long userId, Format format) {
+        List<Object> owners = cursorTemplate.queryForList(
+                "SELECT created_by_user_id FROM charities WHERE id = ?", Object.class, charityId);
+        if (owners.isEmpty()) {
+            throw new RuntimeException("Благотворительная организация не найдена");
+        }
+        requireAccess(userId, owners.get(0));
+
+        log.info("Выгрузка пожертвований организации {} в {} для пользователя {}", charityId, format, userId);
+        return stream(EXPORT_SQL + "WHERE f.charity_id = ? ORDER BY d.id", charityId, format);
+    }
+
+    private void requireAccess(Long userId, Object... ownerIds) {
+        for (Object ownerId : ownerIds) {
+            if (ownerId != null && ((Number) ownerId).longValue() == userId) {
+                return;
+            }
+        }
+        if (!userService.isUserAdmin(userId)) {
+            log.warn("Пользователь {} запросил выгрузку пожертвований без прав", userId);
+            throw new RuntimeException("Выгрузка доступна только создателю фонда или кампании");
+        }
+    }
+
+    private StreamingResponseBody stream(String sql, Long id, Format format) {
+        return outputStream -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            long[] rows = {0};
+            RowCallbackHandler handler = rs -> {
+                try {
+                    if (format == Format.CSV) {
+                        writeCsvRow(writer, rs);
+                    } else {
+                        writeJsonRow(writer, rs);
+                    }
+                } catch (IOException e) {
+                    // Клиент прервал загрузку: выходим из курсора, освобождая соединение
+                    throw new UncheckedIOException(e);
+                }
+                rows[0]++;
+            };
+
+            if (format == Format.CSV) {
+                // BOM, чтобы Excel распознал UTF-8 и кириллицу
+                writer.write('\uFEFF');
+                writeCsvLine(writer, COLUMNS);
+            }
+            try {
+                // Транзакция нужна PostgreSQL-драйверу: вне ее fetch-size игнорируется и результат читается целиком
+                readOnlyTransaction.executeWithoutResult(status -> cursorTemplate.query(sql, handler, id));
+            } catch (UncheckedIOException e) {
+                log.warn("Выгрузка прервана после {} строк: {}", rows[0], e.getCause().getMessage());
+                throw e.getCause();
+            }
+            writer.flush();
+            log.info("Выгрузка завершена: {} строк", rows[0]);
+        };
+    }
+
+    private void writeCsvRow(Writer writer, ResultSet rs) throws SQLException, IOException {
+        boolean anonymous = rs.getBoolean("is_anonymous");
+        writeCsvLine(writer, new String[] {
+                rs.getString("id"),
+                formatTimestamp(rs.getTimestamp("created_at")),
+                rs.getString("fundraising_id"),
+                rs.getString("title"),
+                rs.getBigDecimal("amount").toPlainString(),
+                rs.getString("payment_status"),
+                rs.getString("payment_method"),
+                String.valueOf(rs.getBoolean("is_recurring")),
+                anonymous ? ANONYMOUS_DONOR : donorName(rs),
+                anonymous ? null : rs.getString("email"),
+                rs.getString("message")
+        });
+    }
+
+    private void writeJsonRow(Writer writer, ResultSet rs) throws SQLException, IOException {
+        boolean anonymous = rs.getBoolean("is_anonymous");
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("donationId", rs.getLong("id"));
+        row.put("createdAt", formatTimestamp(rs.getTimestamp("created_at")));
+        row.put("fundraisingId", rs.getLong("fundraising_id"));
+        row.put("fundraisingTitle", rs.getString("title"));
+        row.put("amount", rs.getBigDecimal("amount"));
+        row.put("paymentStatus", rs.getString("payment_status"));
+        row.put("paymentMethod", rs.getString("payment_method"));
+        row.put("recurring", rs.getBoolean("is_recurring"));
+        row.put("anonymous", anonymous);
+        row.put("donorName", anonymous ? ANONYMOUS_DONOR : donorName(rs));
+        row.put("donorEmail", anonymous ? null : rs.getString("email"));
+        row.put("message", rs.getString("message"));
+        writer.write(objectMapper.writeValueAsString(row));
+        writer.write('\n');
+    }
+
+    private void writeCsvLine(Writer writer, String[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write(escapeCsv(values[i]));
+        }
+        writer.write("\r\n");
+    }
+
+    private String escapeCsv(String value) {
+        if (value == null) {
+            return "";
+        }
+        // Значения, начинающиеся с формулы, экранируются, чтобы табличный редактор их не выполнил
+        if (!value.isEmpty() && "=+-@".indexOf(value.charAt(0)) >= 0 && !value.matches("-?\\d+(\\.\\d+)?")) {
+            value = "'" + value;
+        }
+        if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+        return value;
+    }
+
+    private String donorName(ResultSet rs) throws SQLException {
+        String firstName = rs.getString("first_name");
+        String lastName = rs.getString("last_name");
+        String name = ((firstName != null ? firstName : "") + " " + (lastName != null ? lastName : "")).trim();
+        return name.isEmpty() ? null : name;
+    }
+
+    private String formatTimestamp(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime().toString() : null;
+    }
+}
@@ -0,0 +1,351 @@
+package org.example.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.dto.DonationFeedItem;
+import org.example.dto.FundraisingFeedUpdate;
+import org.example.event.DonationCreatedEvent;
+import org.example.event.FundraisingChangedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+/**
+ * Живая лента кампании по Server-Sent Events. События пожертвований приходят после коммита
+ * и копятся в потоке кампании; раз в app.feed.flush-interval-ms накопленное рассылается
+ * одним событием "update", а прогресс перечитывается одним запросом на все измененные
+ * кампании с подписчиками. Число зрителей на нагрузку на базу не влияет.
+ * У каждого подписчика один слот "последнее непосланное": пока медленный клиент принимает
+ * предыдущее событие, новые сливаются в этот слот, а застрявший дольше
+ * app.feed.slow-subscriber-timeout-ms клиент отключается.
+ * Зависшую запись прерывает только таймаут записи сокета (server.tomcat.connection-timeout):
+ * SseEmitter.complete() ждет окончания текущей send(). Пока запись висит, поток отправки занят,
+ * поэтому на каждого отключенного клиента пул временно получает еще один поток (не больше
+ * app.feed.max-stalled-senders), и остальные подписчики продолжают получать события.
+ */
+@Slf4j
+@Service
+public class DonationFeedService {
+
+    private static final int MAX_BUFFERED_DONATIONS = 50;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final long emitterTimeoutMs;
+    private final int maxSubscribers;
+    private final long heartbeatIntervalMs;
+    private final long slowSubscriberTimeoutMs;
+    private final int senderThreads;
+    private final int maxStalledSenders;
+
+    private final Map<Long, FeedStream> streams = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final ThreadPoolExecutor senders;
+    private int stalledSenders;
+
+    public DonationFeedService(
+            NamedParameterJdbcTemplate jdbcTemplate,
+            @Value("${app.feed.emitter-timeout-ms:1800000}") long emitterTimeoutMs,
+            @Value("${app.feed.max-subscribers:10000}") int maxSubscribers,
+            @Value("${app.feed.heartbeat-interval-ms:20000}") long heartbeatIntervalMs,
+            @Value("${app.feed.slow-subscriber-timeout-ms:10000}") long slowSubscriberTimeoutMs,
+            @Value("${app.feed.sender-threads:4}") int senderThreads,
+            @Value("${app.feed.max-stalled-senders:64}") int maxStalledSenders) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.emitterTimeoutMs = emitterTimeoutMs;
+        this.maxSubscribers = maxSubscribers;
+        this.heartbeatIntervalMs = heartbeatIntervalMs;
+        this.slowSubscriberTimeoutMs = slowSubscriberTimeoutMs;
+        this.senderThreads = senderThreads;
+        this.maxStalledSenders = maxStalledSenders;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.senders = new ThreadPoolExecutor(senderThreads, senderThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "donation-feed-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    public SseEmitter subscribe(Long fundraisingId) {
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            log.warn("Превышен лимит подписчиков живой ленты: {}", maxSubscribers);
+            throw new RuntimeException("Слишком много подписчиков, попробуйте позже");
+        }
+
+        // Прогресс берется из памяти, если у кампании уже есть зрители
+        FeedStream existing = streams.get(fundraisingId);
+        Progress progress = existing != null ? existing.progress : null;
+        if (progress == null) {
+            progress = loadProgress(List.of(fundraisingId)).get(fundraisingId);
+            if (progress == null) {
+                subscriberCount.decrementAndGet();
+                throw new RuntimeException("Фандрайзинговая кампания не найдена");
+            }
+        }
+
+        Subscriber subscriber = new Subscriber(fundraisingId, new SseEmitter(emitterTimeoutMs));
+        Progress initial = progress;
+        streams.compute(fundraisingId, (id, stream) -> {
+            FeedStream feed = stream != null ? stream : new FeedStream();
+            if (feed.progress == null) {
+                feed.progress = initial;
+            }
+            feed.subscribers.add(subscriber);
+            return feed;
+        });
+        subscriber.emitter.onCompletion(() -> unsubscribe(subscriber));
+        subscriber.emitter.onTimeout(() -> subscriber.emitter.complete());
+        subscriber.emitter.onError(error -> unsubscribe(subscriber));
+
+        log.debug("Новый подписчик живой ленты кампании {} (всего {})", fundraisingId, subscriberCount.get());
+        deliver(subscriber, toUpdate(fundraisingId, progress, List.of()));
+        return subscriber.emitter;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDonationCreated(DonationCreatedEvent event) {
+        FeedStream stream = streams.get(event.getFundraisingId());
+        if (stream == null) {
+            return;
+        }
+        synchronized (stream.pendingDonations) {
+            stream.pendingDonations.addLast(event.getItem());
+            if (stream.pendingDonations.size() > MAX_BUFFERED_DONATIONS) {
+                stream.pendingDonations.removeFirst();
+            }
+        }
+        stream.dirty = true;
+    }
+
+    // Сумма общего фонда меняется при сбросе счетчика, а не при самом пожертвовании
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFundraisingChanged(FundraisingChangedEvent event) {
+        FeedStream stream = streams.get(event.getFundraisingId());
+        if (stream != null) {
+            stream.dirty = true;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.feed.flush-interval-ms:250}")
+    public void flush() {
+        List<Long> dirtyIds = new ArrayList<>();
+        streams.forEach((fundraisingId, stream) -> {
+            if (stream.dirty) {
+                stream.dirty = false;
+                dirtyIds.add(fundraisingId);
+            }
+        });
+
+        if (!dirtyIds.isEmpty()) {
+            Map<Long, Progress> progress = loadProgress(dirtyIds);
+            for (Long fundraisingId : dirtyIds) {
+                FeedStream stream = streams.get(fundraisingId);
+                Progress current = progress.get(fundraisingId);
+                if (stream == null || current == null) {
+                    continue;
+                }
+                stream.progress = current;
+                List<DonationFeedItem> donations;
+                synchronized (stream.pendingDonations) {
+                    donations = new ArrayList<>(stream.pendingDonations);
+                    stream.pendingDonations.clear();
+                }
+                FundraisingFeedUpdate update = toUpdate(fundraisingId, current, donations);
+                stream.subscribers.forEach(subscriber -> deliver(subscriber, update));
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        streams.forEach((fundraisingId, stream) -> stream.subscribers.forEach(subscriber -> {
+            long sendStartedAt = subscriber.sendStartedAt;
+            if (sendStartedAt > 0 && now - sendStartedAt > slowSubscriberTimeoutMs) {
+                log.warn("Подписчик живой ленты кампании {} не принимает данные, отключаем", fundraisingId);
+                unsubscribe(subscriber);
+                // Соединение закроет поток отправки, когда зависшая запись завершится по таймауту
+                if (resizeSenders(1)) {
+                    subscriber.stalled.set(true);
+                    // Запись могла завершиться до установки флага - тогда замещение возвращается сразу
+                    if (subscriber.sendStartedAt == 0 && subscriber.stalled.getAndSet(false)) {
+                        resizeSenders(-1);
+                    }
+                }
+            } else if (now - subscriber.lastSentAt > heartbeatIntervalMs) {
+                subscriber.pingPending.set(true);
+                schedule(subscriber);
+            }
+        }));
+    }
+
+    public int getSubscriberCount() {
+        return subscriberCount.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        streams.values().forEach(stream -> stream.subscribers.forEach(subscriber -> subscriber.emitter.complete()));
+        senders.shutdown();
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        if (!subscriber.closed.compareAndSet(false, true)) {
+            return;
+        }
+        subscriberCount.decrementAndGet();
+        streams.computeIfPresent(subscriber.fundraisingId, (id, stream) -> {
+            stream.subscribers.remove(subscriber);
+            return stream.subscribers.isEmpty() ? null : stream;
+        });
+    }
+
+    // Непосланное событие заменяется новым, пожертвования из обоих сохраняются
+    private void deliver(Subscriber subscriber, FundraisingFeedUpdate update) {
+        subscriber.mailbox.accumulateAndGet(update, (pending, latest) -> {
+            if (pending == null || pending.getDonations().isEmpty()) {
+                return latest;
+            }
+            List<DonationFeedItem> donations = new ArrayList<>(pending.getDonations());
+            donations.addAll(latest.getDonations());
+            if (donations.size() > MAX_BUFFERED_DONATIONS) {
+                donations = new ArrayList<>(donations.subList(donations.size() - MAX_BUFFERED_DONATIONS, donations.size()));
+            }
+            return new FundraisingFeedUpdate(latest.getFundraisingId(), latest.getCurrentAmount(),
+                    latest.getTargetAmount(), latest.isCompleted(), donations);
+        });
+        schedule(subscriber);
+    }
+
+    private void schedule(Subscriber subscriber) {
+        if (!subscriber.closed.get() && subscriber.sending.compareAndSet(false, true)) {
+            senders.execute(() -> drain(subscriber));
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        while (true) {
+            if (subscriber.closed.get()) {
+                subscriber.emitter.complete();
+                return;
+            }
+            FundraisingFeedUpdate update = subscriber.mailbox.getAndSet(null);
+            boolean ping = update == null && subscriber.pingPending.getAndSet(false);
+            if (update == null && !ping) {
+                subscriber.sending.set(false);
+                // Событие могло прийти между проверкой и сбросом флага
+                if (subscriber.mailbox.get() == null || !subscriber.sending.compareAndSet(false, true)) {
+                    return;
+                }
+                continue;
+            }
+
+            subscriber.sendStartedAt = System.currentTimeMillis();
+            try {
+                if (ping) {
+                    subscriber.emitter.send(SseEmitter.event().comment("ping"));
+                } else {
+                    subscriber.emitter.send(SseEmitter.event().name("update").data(update));
+                }
+                subscriber.lastSentAt = System.currentTimeMillis();
+            } catch (Exception e) {
+                // Клиент закрыл соединение
+                unsubscribe(subscriber);
+                subscriber.emitter.completeWithError(e);
+                return;
+            } finally {
+                subscriber.sendStartedAt = 0;
+                if (subscriber.stalled.getAndSet(false)) {
+                    resizeSenders(-1);
+                }
+            }
+        }
+    }
+
+    // Поток, занятый зависшей записью, замещается дополнительным; false - лимит замещений исчерпан
+    private synchronized boolean resizeSenders(int delta) {
+        if (delta > 0 && stalledSenders >= maxStalledSenders) {
+            log.warn("Исчерпан лимит замещения зависших потоков живой ленты: {}", maxStalledSenders);
+            return false;
+        }
+        stalledSenders += delta;
+        int size = senderThreads + stalledSenders;
+        if (delta > 0) {
+            senders.setMaximumPoolSize(size);
+            senders.setCorePoolSize(size);
+        } else {
+            senders.setCorePoolSize(size);
+            senders.setMaximumPoolSize(size);
+        }
+        return true;
+    }
+
+    private Map<Long, Progress> loadProgress(List<Long> fundraisingIds) {
+        return jdbcTemplate.query(
+                "SELECT id, current_amount, target_amount, is_completed FROM fundraisings WHERE id IN (:ids)",
+                Map.of("ids", fundraisingIds),
+                (rs, rowNum) -> Map.entry(rs.getLong("id"), new Progress(rs.getBigDecimal("current_amount"),
+                        rs.getBigDecimal("target_amount"), rs.getBoolean("is_completed"))))
+                .stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+    }
+
+    private FundraisingFeedUpdate toUpdate(Long fundraisingId, Progress progress, List<DonationFeedItem> donations) {
+        return new FundraisingFeedUpdate(fundraisingId, progress.currentAmount, progress.targetAmount,
+                progress.completed, donations);
+    }
+
+    private static final class FeedStream {
+        final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+        final Deque<DonationFeedItem> pendingDonations = new ArrayDeque<>();
+        volatile boolean dirty;
+        volatile Progress progress;
+    }
+
+    private static final class Subscriber {
+        final Long fundraisingId;
+        final SseEmitter emitter;
+        final AtomicReference<FundraisingFeedUpdate> mailbox = new AtomicReference<>();
+        final AtomicBoolean sending = new AtomicBoolean();
+        final AtomicBoolean pingPending = new AtomicBoolean();
+        final AtomicBoolean closed = new AtomicBoolean();
+        // Отключен за зависшую запись, и его поток отправки замещен дополнительным
+        final AtomicBoolean stalled = new AtomicBoolean();
+        volatile long sendStartedAt;
+        volatile long lastSentAt = System.currentTimeMillis();
+
+        Subscriber(Long fundraisingId, SseEmitter emitter) {
+            this.fundraisingId = fundraisingId;
+            this.emitter = emitter;
+        }
+    }
+
+    private static final class Progress {
+        final BigDecimal currentAmount;
+        final BigDecimal targetAmount;
+        final boolean completed;
+
+        Progress(BigDecimal currentAmount, BigDecimal targetAmount, boolean completed) {
+            this.currentAmount = currentAmount;
+            this.targetAmount = targetAmount;
+            this.completed = completed;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package org.example.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.example.dto.DonationRequest;
+import org.example.exception.DuplicateRequestException;
+import org.example.model.Donation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+
+/**
+ * Идемпотентное создание пожертвований по заголовку Idempotency-Key. Ключ, привязанный
+ * к пользователю, сохраняется в donations.transaction_id. Перед уникальным индексом стоит
+ * окно недавних ключей в памяти: пока первый запрос обрабатывается, повторы отклоняются
+ * без обращения к базе, а после успеха получают исходное пожертвование.
+ * Методы не транзакционные: пожертвование коммитится внутри DonationService, чтобы
+ * нарушение уникальности можно было поймать здесь и ответить исходной записью.
+ */
+@Slf4j
+@Service
+public class DonationIdempotencyService {
+
+    private static final int MAX_KEY_LENGTH = 200;
+    // Метка ключа, запрос по которому еще выполняется
+    private static final long IN_FLIGHT = -1L;
+
+    private final DonationService donationService;
+    private final Cache<String, Long> recentKeys;
+
+    public DonationIdempotencyService(
+            DonationService donationService,
+            @Value("${app.idempotency.window-seconds:600}") long windowSeconds,
+            @Value("${app.idempotency.max-keys:100000}") long maxKeys) {
+        this.donationService = donationService;
+        this.recentKeys = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterWrite(Duration.ofSeconds(windowSeconds))
+                .build();
+    }
+
+    public Donation createDonation(DonationRequest request, Long userId, String idempotencyKey) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return donationService.createDonation(request, userId);
+        }
+        if (idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new RuntimeException("Idempotency-Key не должен быть длиннее " + MAX_KEY_LENGTH + " символов");
+        }
+        String transactionId = "u" + userId + ":" + idempotencyKey.trim();
+
+        Long known = recentKeys.asMap().putIfAbsent(transactionId, IN_FLIGHT);
+        if (known != null) {
+            if (known == IN_FLIGHT) {
+                log.warn("Повторный запрос с ключом {} пришел до завершения первого", transactionId);
+                throw new DuplicateRequestException("Запрос с этим Idempotency-Key уже обрабатывается");
+            }
+            log.info("Повтор запроса с ключом {}: возвращаем пожертвование {}", transactionId, known);
+            return donationService.findByTransactionId(transactionId)
+                    .orElseGet(() -> createFresh(request, userId, transactionId));
+        }
+        return createFresh(request, userId, transactionId);
+    }
+
+    private Donation createFresh(DonationRequest request, Long userId, String transactionId) {
+        recentKeys.put(transactionId, IN_FLIGHT);
+        try {
+            // Ключ мог быть записан до перезапуска или другим экземпляром приложения
+            Donation donation = donationService.findByTransactionId(transactionId)
+                    .orElseGet(() -> donationService.createDonation(request, userId, transactionId));
+            recentKeys.put(transactionId, donation.getId());
+            return donation;
+        } catch (DataIntegrityViolationException e) {
+            // Параллельный запрос с тем же ключом успел вставить строку первым
+            Donation donation = donationService.findByTransactionId(transactionId).orElseThrow(() -> {
+                recentKeys.invalidate(transactionId);
+                return e;
+            });
+            log.info("Ключ {} уже использован пожертвованием {}", transactionId, donation.getId());
+            recentKeys.put(transactionId, donation.getId());
+            return donation;
+        } catch (RuntimeException e) {
+            // Неудачный запрос можно повторить с тем же ключом
+            recentKeys.invalidate(transactionId);
+            throw e;
+        }
+    }
+}
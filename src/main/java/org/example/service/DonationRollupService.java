@@ -0,0 +1,275 @@
+package org.example.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.dto.RefundItem;
+import org.example.dto.RollupPoint;
+import org.example.dto.RollupSeries;
+import org.example.model.Donation;
+import org.example.model.DonationRollup;
+import org.example.repository.DonationRollupRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Почасовые и дневные агрегаты пожертвований по кампаниям и организациям для графиков.
+ * Новые пожертвования попадают в часовые корзины (из OutboxDispatcherService), а
+ * компактизация сворачивает часовые корзины старше app.rollups.hourly-retention-days
+ * в дневные. Запрос ряда читает оба вида корзин одним проходом по индексу диапазона.
+ */
+@Slf4j
+@Service
+public class DonationRollupService {
+
+    private static final int COMPACTION_BATCH_SIZE = 1000;
+    private static final Comparator<DonationRollup.Key> KEY_ORDER = Comparator
+            .comparing(DonationRollup.Key::getScope)
+            .thenComparing(DonationRollup.Key::getScopeId)
+            .thenComparing(DonationRollup.Key::getGranularity)
+            .thenComparing(DonationRollup.Key::getBucketStart);
+
+    private final DonationRollupRepository rollupRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int hourlyRetentionDays;
+    private final int maxPoints;
+
+    public DonationRollupService(
+            DonationRollupRepository rollupRepository,
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            @Value("${app.rollups.hourly-retention-days:7}") int hourlyRetentionDays,
+            @Value("${app.rollups.max-points:2000}") int maxPoints) {
+        this.rollupRepository = rollupRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.hourlyRetentionDays = hourlyRetentionDays;
+        this.maxPoints = maxPoints;
+    }
+
+    // Учитывает завершенные пожертвования в часовых корзинах кампании и организации
+    @Transactional
+    public void recordDonations(List<Donation> donations) {
+        Map<DonationRollup.Key, DonationRollup> deltas = new TreeMap<>(KEY_ORDER);
+        donations.stream()
+                .filter(donation -> donation.getPaymentStatus() == Donation.PaymentStatus.COMPLETED)
+                .forEach(donation -> {
+                    LocalDateTime hour = donation.getCreatedAt().truncatedTo(ChronoUnit.HOURS);
+                    Long fundraisingId = donation.getFundraising().getId();
+                    Long charityId = donation.getFundraising().getCharity().getId();
+                    accumulate(deltas, new DonationRollup.Key(DonationRollup.Scope.FUNDRAISING, fundraisingId,
+                            DonationRollup.Granularity.HOUR, hour), donation.getAmount(), donation.getUser().getId());
+                    accumulate(deltas, new DonationRollup.Key(DonationRollup.Scope.CHARITY, charityId,
+                            DonationRollup.Granularity.HOUR, hour), donation.getAmount(), donation.getUser().getId());
+                });
+        // Ключи отсортированы: параллельные обновления блокируют строки в одном порядке
+        deltas.values().forEach(this::mergeInto);
+    }
+
+    // Сумма и количество уменьшаются; эскиз доноров удаление не отражает
+    @Transactional
+    public void recordDeletion(Donation donation) {
+        if (donation.getPaymentStatus() != Donation.PaymentStatus.COMPLETED) {
+            return;
+        }
+        LocalDateTime createdAt = donation.getCreatedAt();
+        subtract(DonationRollup.Scope.FUNDRAISING, donation.getFundraising().getId(), createdAt, donation.getAmount(), 1);
+        subtract(DonationRollup.Scope.CHARITY, donation.getFundraising().getCharity().getId(), createdAt,
+                donation.getAmount(), 1);
+    }
+
+    // Возвращенные пожертвования кампании вычитаются из корзин часа своего создания, одна правка на корзину
+    @Transactional
+    public void recordRefunds(Long fundraisingId, Long charityId, List<RefundItem> refunds) {
+        Map<LocalDateTime, BigDecimal> amounts = new TreeMap<>();
+        Map<LocalDateTime, Long> counts = new HashMap<>();
+        for (RefundItem refund : refunds) {
+            LocalDateTime hour = refund.getCreatedAt().truncatedTo(ChronoUnit.HOURS);
+            amounts.merge(hour, refund.getAmount(), BigDecimal::add);
+            counts.merge(hour, 1L, Long::sum);
+        }
+        // Тот же порядок блокировок, что и в recordDonations: сначала корзины кампании, затем организации
+        amounts.forEach((hour, amount) ->
+                subtract(DonationRollup.Scope.FUNDRAISING, fundraisingId, hour, amount, counts.get(hour)));
+        amounts.forEach((hour, amount) ->
+                subtract(DonationRollup.Scope.CHARITY, charityId, hour, amount, counts.get(hour)));
+    }
+
+    @Scheduled(cron = "${app.rollups.compaction-cron:0 15 * * * *}")
+    public void compact() {
+        LocalDateTime cutoff = hourlyCutoff();
+        int compacted = 0;
+        Integer batch;
+        do {
+            batch = transactionTemplate.execute(status -> {
+                List<DonationRollup> hourly = rollupRepository.findHourlyBefore(
+                        cutoff, PageRequest.of(0, COMPACTION_BATCH_SIZE));
+                Map<DonationRollup.Key, DonationRollup> daily = new TreeMap<>(KEY_ORDER);
+                for (DonationRollup row : hourly) {
+                    DonationRollup.Key key = new DonationRollup.Key(row.getScope(), row.getScopeId(),
+                            DonationRollup.Granularity.DAY, row.getBucketStart().truncatedTo(ChronoUnit.DAYS));
+                    DonationRollup day = daily.computeIfAbsent(key, this::newRollup);
+                    day.setAmount(day.getAmount().add(row.getAmount()));
+                    day.setDonationCount(day.getDonationCount() + row.getDonationCount());
+                    DonorSketch.merge(day.getDonorSketch(), row.getDonorSketch());
+                }
+                daily.values().forEach(this::mergeInto);
+                rollupRepository.deleteAll(hourly);
+                return hourly.size();
+            });
+            compacted += batch != null ? batch : 0;
+        } while (batch != null && batch == COMPACTION_BATCH_SIZE);
+
+        if (compacted > 0) {
+            log.info("Компактизация агрегатов: {} часовых корзин до {} свернуто в дневные", compacted, cutoff);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public RollupSeries getSeries(DonationRollup.Scope scope, Long scopeId, String granularityName,
+            LocalDateTime from, LocalDateTime to) {
+        DonationRollup.Granularity granularity = parseGranularity(granularityName);
+        ChronoUnit unit = granularity == DonationRollup.Granularity.HOUR ? ChronoUnit.HOURS : ChronoUnit.DAYS;
+
+        LocalDateTime end = (to != null ? to : LocalDateTime.now()).truncatedTo(unit).plus(1, unit);
+        LocalDateTime start = from != null
+                ? from.truncatedTo(unit)
+                : end.minus(granularity == DonationRollup.Granularity.HOUR ? 48 : 30, unit);
+        long points = unit.between(start, end);
+        if (points <= 0) {
+            throw new RuntimeException("Начало периода должно быть раньше его конца");
+        }
+        if (points > maxPoints) {
+            throw new RuntimeException(String.format("Слишком длинный период: %d точек (максимум %d)", points, maxPoints));
+        }
+        if (granularity == DonationRollup.Granularity.HOUR && start.isBefore(hourlyCutoff())) {
+            throw new RuntimeException(String.format(
+                    "Почасовые данные хранятся %d дней, для более раннего периода используйте granularity=day",
+                    hourlyRetentionDays));
+        }
+
+        Map<LocalDateTime, RollupPoint> series = new TreeMap<>();
+        Map<LocalDateTime, byte[]> sketches = new HashMap<>();
+        for (LocalDateTime bucket = start; bucket.isBefore(end); bucket = bucket.plus(1, unit)) {
+            series.put(bucket, new RollupPoint(bucket, BigDecimal.ZERO, 0, 0));
+        }
+        for (DonationRollup row : rollupRepository.findRange(scope, scopeId, start, end)) {
+            if (granularity == DonationRollup.Granularity.HOUR && row.getGranularity() != granularity) {
+                continue;
+            }
+            LocalDateTime bucket = row.getBucketStart().truncatedTo(unit);
+            RollupPoint point = series.get(bucket);
+            point.setAmount(point.getAmount().add(row.getAmount()));
+            point.setDonationCount(point.getDonationCount() + row.getDonationCount());
+            DonorSketch.merge(sketches.computeIfAbsent(bucket, b -> DonorSketch.empty()), row.getDonorSketch());
+        }
+        sketches.forEach((bucket, sketch) -> series.get(bucket).setDonorEstimate(DonorSketch.estimate(sketch)));
+
+        return new RollupSeries(scope.name(), scopeId, granularity.name(), start, end, new ArrayList<>(series.values()));
+    }
+
+    // Полный пересчет агрегатов из donations: часовые корзины в пределах хранения, дневные - раньше.
+    // Как и пересчет статистики, лучше запускать при низкой нагрузке
+    @Transactional
+    public int rebuild() {
+        LocalDateTime cutoff = hourlyCutoff();
+        Map<DonationRollup.Key, DonationRollup> rollups = new TreeMap<>(KEY_ORDER);
+        jdbcTemplate.query(
+                "SELECT d.fundraising_id, f.charity_id, d.user_id, d.amount, d.created_at " +
+                "FROM donations d JOIN fundraisings f ON f.id = d.fundraising_id " +
+                "WHERE d.payment_status = 'COMPLETED'",
+                rs -> {
+                    LocalDateTime createdAt = rs.getTimestamp("created_at").toLocalDateTime();
+                    boolean hourly = !createdAt.isBefore(cutoff);
+                    DonationRollup.Granularity granularity = hourly
+                            ? DonationRollup.Granularity.HOUR : DonationRollup.Granularity.DAY;
+                    LocalDateTime bucket = createdAt.truncatedTo(hourly ? ChronoUnit.HOURS : ChronoUnit.DAYS);
+                    BigDecimal amount = rs.getBigDecimal("amount");
+                    long userId = rs.getLong("user_id");
+                    accumulate(rollups, new DonationRollup.Key(DonationRollup.Scope.FUNDRAISING,
+                            rs.getLong("fundraising_id"), granularity, bucket), amount, userId);
+                    accumulate(rollups, new DonationRollup.Key(DonationRollup.Scope.CHARITY,
+                            rs.getLong("charity_id"), granularity, bucket), amount, userId);
+                });
+
+        rollupRepository.deleteAllRows();
+        LocalDateTime now = LocalDateTime.now();
+        rollups.values().forEach(rollup -> rollup.setUpdatedAt(now));
+        rollupRepository.saveAll(rollups.values());
+        log.info("Агрегаты пожертвований пересчитаны: {} корзин", rollups.size());
+        return rollups.size();
+    }
+
+    private void accumulate(Map<DonationRollup.Key, DonationRollup> rollups, DonationRollup.Key key,
+            BigDecimal amount, long userId) {
+        DonationRollup rollup = rollups.computeIfAbsent(key, this::newRollup);
+        rollup.setAmount(rollup.getAmount().add(amount));
+        rollup.setDonationCount(rollup.getDonationCount() + 1);
+        DonorSketch.add(rollup.getDonorSketch(), userId);
+    }
+
+    private void mergeInto(DonationRollup delta) {
+        DonationRollup rollup = rollupRepository.findForUpdate(delta.getScope(), delta.getScopeId(),
+                delta.getGranularity(), delta.getBucketStart()).orElse(null);
+        if (rollup == null) {
+            rollup = delta;
+        } else {
+            rollup.setAmount(rollup.getAmount().add(delta.getAmount()));
+            rollup.setDonationCount(rollup.getDonationCount() + delta.getDonationCount());
+            DonorSketch.merge(rollup.getDonorSketch(), delta.getDonorSketch());
+        }
+        rollup.setUpdatedAt(LocalDateTime.now());
+        rollupRepository.save(rollup);
+    }
+
+    // Корзина могла быть уже свернута в дневную
+    private void subtract(DonationRollup.Scope scope, Long scopeId, LocalDateTime createdAt, BigDecimal amount,
+            long count) {
+        DonationRollup rollup = rollupRepository.findForUpdate(scope, scopeId, DonationRollup.Granularity.HOUR,
+                        createdAt.truncatedTo(ChronoUnit.HOURS))
+                .or(() -> rollupRepository.findForUpdate(scope, scopeId, DonationRollup.Granularity.DAY,
+                        createdAt.truncatedTo(ChronoUnit.DAYS)))
+                .orElse(null);
+        if (rollup == null) {
+            return;
+        }
+        rollup.setAmount(rollup.getAmount().subtract(amount));
+        rollup.setDonationCount(Math.max(0, rollup.getDonationCount() - count));
+        rollup.setUpdatedAt(LocalDateTime.now());
+        rollupRepository.save(rollup);
+    }
+
+    private DonationRollup newRollup(DonationRollup.Key key) {
+        DonationRollup rollup = new DonationRollup(key);
+        rollup.setDonorSketch(DonorSketch.empty());
+        return rollup;
+    }
+
+    private LocalDateTime hourlyCutoff() {
+        return LocalDate.now().minusDays(hourlyRetentionDays).atStartOfDay();
+    }
+
+    private DonationRollup.Granularity parseGranularity(String value) {
+        try {
+            return DonationRollup.Granularity.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new RuntimeException("Неподдерживаемая детализация: " + value + " (hour или day)");
+        }
+    }
+}
@@ -2,44 +2,94 @@ package org.example.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.example.dto.DonationFeedItem;
+import org.example.dto.DonationHistoryItem;
 import org.example.dto.DonationRequest;
+import org.example.dto.OffsetPage;
+import org.example.event.DonationCreatedEvent;
+import org.example.event.FundraisingChangedEvent;
+import org.example.event.GeneralFundDonationEvent;
 import org.example.model.Donation;
 import org.example.model.Fundraising;
+import org.example.model.OutboxEvent;
 import org.example.model.User;
 import org.example.repository.DonationRepository;
 import org.example.repository.FundraisingRepository;
+import org.example.repository.OutboxEventRepository;
 import org.example.repository.UserRepository;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.context.annotation.Lazy;
+
+import javax.persistence.EntityManager;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 public class DonationService {
 
+    // Целевая сумма, которой помечен общий фонд организации
+    static final BigDecimal GENERAL_FUND_TARGET = new BigDecimal("999999999999");
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final DonationRepository donationRepository;
     private final UserRepository userRepository;
     private final FundraisingRepository fundraisingRepository;
     private final RecurringPaymentService recurringPaymentService;
+    private final DonationStatsService donationStatsService;
+    private final DonationRollupService donationRollupService;
+    private final OutboxEventRepository outboxEventRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final EntityManager entityManager;
 
     public DonationService(
             DonationRepository donationRepository,
             UserRepository userRepository,
             FundraisingRepository fundraisingRepository,
-            @Lazy RecurringPaymentService recurringPaymentService) {
+            @Lazy RecurringPaymentService recurringPaymentService,
+            DonationStatsService donationStatsService,
+            DonationRollupService donationRollupService,
+            OutboxEventRepository outboxEventRepository,
+            ApplicationEventPublisher eventPublisher,
+            EntityManager entityManager) {
         this.donationRepository = donationRepository;
         this.userRepository = userRepository;
         this.fundraisingRepository = fundraisingRepository;
         this.recurringPaymentService = recurringPaymentService;
+        this.donationStatsService = donationStatsService;
+        this.donationRollupService = donationRollupService;
+        this.outboxEventRepository = outboxEventRepository;
+        this.eventPublisher = eventPublisher;
+        this.entityManager = entityManager;
     }
 
     @Transactional
     public Donation createDonation(DonationRequest request, Long userId) {
-        log.info("Создание нового пожертвования от пользователя {} для кампании {}", 
+        return createDonation(request, userId, generateTransactionId());
+    }
+
+    // transactionId уникален: повторная вставка с тем же значением завершится нарушением уникальности.
+    // В транзакции запроса остаются только проверки, резерв суммы и вставка пожертвования
+    // в статусе PENDING; платежный шлюз вызывается позже, вне потока запроса
+    @Transactional
+    public Donation createDonation(DonationRequest request, Long userId, String transactionId) {
+        log.debug("Создание нового пожертвования от пользователя {} для кампании {}", 
                 userId, request.getFundraisingId());
 
         User user = userRepository.findById(userId)
@@ -54,7 +104,7 @@ public class DonationService {
             // Получаем список всех фандрайзингов и ищем основной
             List<Fundraising> fundraisings = fundraisingRepository.findByCharityId(request.getCharityId());
             fundraising = fundraisings.stream()
-                    .filter(f -> f.isActive() && f.getTargetAmount().compareTo(new BigDecimal("999999999999")) >= 0)
+                    .filter(f -> f.isActive() && f.getTargetAmount().compareTo(GENERAL_FUND_TARGET) >= 0)
                     .findFirst()
                     .orElseThrow(() -> {
                         log.error("Не найден основной фонд для charity {}", request.getCharityId());
@@ -81,19 +131,24 @@ public class DonationService {
             throw new RuntimeException("Фонд должен быть верифицирован для приема пожертвований");
         }
 
-        // Для основного фонда не проверяем лимит целевой суммы
-        if (fundraising.getTargetAmount().compareTo(new BigDecimal("999999999999")) < 0) {
-            BigDecimal currentAmount = fundraising.getCurrentAmount();
-            BigDecimal targetAmount = fundraising.getTargetAmount();
-            BigDecimal remainingAmount = targetAmount.subtract(currentAmount);
-            
-            if (request.getAmount().compareTo(remainingAmount) > 0) {
-                log.warn("Попытка пожертвования суммы больше необходимой. Запрошено: {}, Осталось собрать: {}", 
-                        request.getAmount(), remainingAmount);
-                throw new RuntimeException(String.format(
-                    "Сумма пожертвования превышает оставшуюся необходимую сумму. Максимально возможная сумма: %s ₽", 
-                    remainingAmount.toString()));
+        // Сумма резервируется одним условным UPDATE, без чтения-изменения-записи: лимит цели учитывает
+        // и платежи, которые еще обрабатываются. Общий фонд без лимита, для него резерв не нужен
+        if (!isGeneralFund(fundraising)
+                && fundraisingRepository.reserveDonationAmount(fundraising.getId(), request.getAmount()) == 0) {
+            entityManager.refresh(fundraising);
+            if (!fundraising.isActive()) {
+                log.warn("Кампания {} закрылась до зачисления пожертвования", fundraising.getId());
+                throw new RuntimeException("Кампания больше не принимает пожертвования");
             }
+            BigDecimal remainingAmount = fundraising.getTargetAmount()
+                    .subtract(fundraising.getCurrentAmount())
+                    .subtract(fundraising.getReservedAmount())
+                    .max(BigDecimal.ZERO);
+            log.warn("Попытка пожертвования суммы больше необходимой. Запрошено: {}, Осталось собрать: {}", 
+                    request.getAmount(), remainingAmount);
+            throw new RuntimeException(String.format(
+                "Сумма пожертвования превышает оставшуюся необходимую сумму. Максимально возможная сумма: %s ₽", 
+                remainingAmount.toString()));
         }
 
         Donation donation = new Donation();
@@ -103,43 +158,136 @@ public class DonationService {
         donation.setMessage(request.getMessage());
         donation.setAnonymous(request.isAnonymous());
         donation.setCreatedAt(LocalDateTime.now());
-        donation.setPaymentStatus(Donation.PaymentStatus.COMPLETED);
+        // Платеж проводит PaymentProcessingService; до подтверждения сумма не входит в current_amount
+        donation.setPaymentStatus(Donation.PaymentStatus.PENDING);
+        donation.setNextPaymentAttemptAt(donation.getCreatedAt());
         donation.setPaymentMethod(request.getPaymentMethod());
         donation.setRecurring(request.isRecurring());
         donation.setRecurringInterval(request.getRecurringInterval());
+        donation.setTotalsApplied(false);
+        donation.setTransactionId(transactionId);
 
         donation = donationRepository.save(donation);
-        
-        fundraising.setCurrentAmount(fundraising.getCurrentAmount().add(request.getAmount()));
-        fundraisingRepository.save(fundraising);
-        
-        if (request.isRecurring()) {
-            try {
-                int paymentDay = LocalDateTime.now().getDayOfMonth();
-                recurringPaymentService.createRecurringPayment(user, fundraising.getId(), request.getAmount(), paymentDay);
-                log.info("Создан регулярный платеж для пожертвования {} ({})", 
-                        donation.getId(), fundraising.getCharity().getName());
-            } catch (Exception e) {
-                log.error("Ошибка при создании регулярного платежа для пожертвования {}: {}", 
-                        donation.getId(), e.getMessage());
+        log.info("Пожертвование создано и ожидает оплаты. ID: {}, Сумма: {}, Кампания: {}, Фонд: {}", 
+                donation.getId(), donation.getAmount(), fundraising.getId(), fundraising.getCharity().getName());
+        return donation;
+    }
+
+    // Платеж подтвержден шлюзом: сумма переходит из резерва в current_amount (общий фонд - через
+    // GeneralFundCounterService), а статистику, регулярный платеж и завершение кампании выполняет
+    // OutboxDispatcherService после коммита. Повторное подтверждение ничего не меняет
+    @Transactional
+    public void completePayment(Long donationId) {
+        Donation donation = donationRepository.findById(donationId).orElse(null);
+        if (donation == null) {
+            log.warn("Платеж подтвержден, но пожертвование {} уже удалено", donationId);
+            return;
+        }
+        if (donationRepository.finishPayment(donationId, Donation.PaymentStatus.COMPLETED, null) == 0) {
+            log.debug("Платеж по пожертвованию {} уже обработан", donationId);
+            return;
+        }
+
+        Fundraising fundraising = donation.getFundraising();
+        if (isGeneralFund(fundraising)) {
+            eventPublisher.publishEvent(new GeneralFundDonationEvent(fundraising.getId(), donation.getAmount()));
+        } else {
+            fundraisingRepository.settleReservedAmount(fundraising.getId(), donation.getAmount());
+        }
+        outboxEventRepository.save(new OutboxEvent(
+                OutboxEvent.Type.DONATION_CREATED, fundraising.getId(), donationId));
+        publishDonationCreated(donation);
+
+        log.info("Платеж по пожертвованию {} подтвержден. Сумма: {}, Кампания: {}",
+                donationId, donation.getAmount(), fundraising.getId());
+    }
+
+    // Пачка подтвержденных платежей (списания регулярных платежей): статусы меняются одним UPDATE,
+    // резерв переносится одним UPDATE на кампанию, а события диспетчера пишутся одним INSERT
+    @Transactional
+    public int completePayments(Collection<Long> donationIds) {
+        List<Long> lockedIds = donationRepository.lockPendingByIds(donationIds);
+        if (lockedIds.isEmpty()) {
+            return 0;
+        }
+        List<Donation> donations = donationRepository.findAllById(lockedIds);
+        donationRepository.finishPayments(lockedIds, Donation.PaymentStatus.COMPLETED);
+
+        Map<Long, List<Donation>> byFundraising = donations.stream()
+                .collect(Collectors.groupingBy(donation -> donation.getFundraising().getId(), TreeMap::new, Collectors.toList()));
+        byFundraising.forEach((fundraisingId, group) -> {
+            BigDecimal total = group.stream().map(Donation::getAmount).reduce(BigDecimal.ZERO, BigDecimal::add);
+            if (isGeneralFund(group.get(0).getFundraising())) {
+                eventPublisher.publishEvent(new GeneralFundDonationEvent(fundraisingId, total));
+            } else {
+                fundraisingRepository.settleReservedAmount(fundraisingId, total);
             }
+        });
+        outboxEventRepository.insertDonationCreatedEvents(lockedIds, LocalDateTime.now());
+        donations.forEach(this::publishDonationCreated);
+        return lockedIds.size();
+    }
+
+    @Transactional
+    public void failPayments(Map<Long, String> reasons) {
+        reasons.forEach(this::failPayment);
+    }
+
+    // Платеж отклонен или не проведен за отведенные попытки: резерв кампании освобождается
+    @Transactional
+    public void failPayment(Long donationId, String reason) {
+        Donation donation = donationRepository.findById(donationId).orElse(null);
+        if (donation == null || donationRepository.finishPayment(donationId, Donation.PaymentStatus.FAILED, reason) == 0) {
+            return;
         }
-        
-        BigDecimal totalAmount = donationRepository.getTotalAmountByFundraisingId(fundraising.getId());
-        log.info("Пожертвование успешно создано. ID: {}, Сумма: {}, Общая сумма кампании: {}, Фонд: {}", 
-                donation.getId(), donation.getAmount(), totalAmount, fundraising.getCharity().getName());
-
-        // Проверяем завершение только для обычных фандрайзингов
-        if (fundraising.getTargetAmount().compareTo(new BigDecimal("999999999999")) < 0) {
-            if (totalAmount != null && totalAmount.compareTo(fundraising.getTargetAmount()) >= 0) {
-                log.info("Кампания {} достигла целевой суммы! ({} из {})", 
-                        fundraising.getId(), totalAmount, fundraising.getTargetAmount());
-                fundraising.setCompleted(true);
-                fundraisingRepository.save(fundraising);
+        Fundraising fundraising = donation.getFundraising();
+        if (!isGeneralFund(fundraising)) {
+            fundraisingRepository.releaseReservedAmount(fundraising.getId(), donation.getAmount());
+        }
+        log.warn("Платеж по пожертвованию {} не прошел: {}", donationId, reason);
+    }
+
+    // Отложенная обработка новых пожертвований одной кампании, в транзакции диспетчера.
+    // Пожертвования, удаленные до обработки, пропускаются
+    @Transactional
+    public void processCreatedDonations(Long fundraisingId, Collection<Long> donationIds) {
+        List<Donation> donations = donationRepository.findAllById(donationIds).stream()
+                .sorted(Comparator.comparing(Donation::getId))
+                .collect(Collectors.toList());
+        if (donations.isEmpty()) {
+            return;
+        }
+        Fundraising fundraising = donations.get(0).getFundraising();
+        donationRollupService.recordDonations(donations);
+
+        if (!isGeneralFund(fundraising)) {
+            Set<Long> pendingIds = new HashSet<>(donationRepository.lockPendingTotalsByIds(donationIds));
+            List<Donation> pending = donations.stream()
+                    .filter(donation -> pendingIds.contains(donation.getId()))
+                    .collect(Collectors.toList());
+            donationStatsService.recordDonations(pending);
+
+            if (fundraisingRepository.markCompletedIfTargetReached(fundraisingId) > 0) {
+                log.info("Кампания {} достигла целевой суммы! (цель {})", fundraisingId, fundraising.getTargetAmount());
             }
+            eventPublisher.publishEvent(new FundraisingChangedEvent(fundraisingId, fundraising.getCharity().getId()));
         }
 
-        return donation;
+        // Списания по уже существующим подпискам новых подписок не создают
+        donations.stream()
+                .filter(donation -> donation.isRecurring() && donation.getRecurringPaymentId() == null)
+                .forEach(donation -> {
+                    recurringPaymentService.createRecurringPayment(donation.getUser(), fundraisingId,
+                            donation.getAmount(), donation.getCreatedAt().getDayOfMonth());
+                    log.info("Создан регулярный платеж для пожертвования {} ({})",
+                            donation.getId(), fundraising.getCharity().getName());
+                });
+    }
+
+    private void publishDonationCreated(Donation donation) {
+        eventPublisher.publishEvent(new DonationCreatedEvent(donation.getFundraising().getId(), new DonationFeedItem(
+                donation.getId(), donation.getAmount(), donation.isAnonymous() ? null : donation.getUser().getFirstName(),
+                donation.isRecurring(), donation.getCreatedAt())));
     }
 
     @Transactional(readOnly = true)
@@ -180,6 +328,28 @@ public class DonationService {
         return donations;
     }
 
+    @Transactional(readOnly = true)
+    public OffsetPage<DonationHistoryItem> getUserDonationHistory(Long userId, int page, int size, String direction) {
+        Pageable pageable = historyPageable(page, size, direction);
+        log.debug("Получение истории пожертвований пользователя {}: страница {} (размер {})",
+                userId, pageable.getPageNumber(), pageable.getPageSize());
+        return toPage(donationRepository.findHistoryByUserId(userId, pageable));
+    }
+
+    @Transactional(readOnly = true)
+    public OffsetPage<DonationHistoryItem> getFundraisingDonationHistory(
+            Long fundraisingId, int page, int size, String direction) {
+        Pageable pageable = historyPageable(page, size, direction);
+        log.debug("Получение истории пожертвований кампании {}: страница {} (размер {})",
+                fundraisingId, pageable.getPageNumber(), pageable.getPageSize());
+        return toPage(donationRepository.findHistoryByFundraisingId(fundraisingId, pageable));
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<Donation> findByTransactionId(String transactionId) {
+        return donationRepository.findByTransactionId(transactionId);
+    }
+
     @Transactional(readOnly = true)
     public BigDecimal getTotalDonationAmount(Long fundraisingId) {
         log.debug("Подсчет общей суммы пожертвований для кампании с ID: {}", fundraisingId);
@@ -202,10 +372,33 @@ public class DonationService {
             throw new RuntimeException("Нет прав на удаление этого пожертвования");
         }
 
-        donationRepository.deleteById(id);
+        if (donation.getPaymentStatus() == Donation.PaymentStatus.PENDING) {
+            log.warn("Попытка удалить пожертвование {} до завершения платежа", id);
+            throw new RuntimeException("Платеж по пожертвованию еще обрабатывается");
+        }
+
+        // Еще не учтенное пожертвование удаляем без поправки статистики; если сброс счетчика
+        // или диспетчер успели его учесть, идем обычным путем
+        if (!donation.isTotalsApplied() && donationRepository.deleteIfTotalsPending(id) > 0) {
+            if (isGeneralFund(donation.getFundraising())
+                    && donation.getPaymentStatus() == Donation.PaymentStatus.COMPLETED) {
+                eventPublisher.publishEvent(new GeneralFundDonationEvent(
+                        donation.getFundraising().getId(), donation.getAmount().negate()));
+            }
+        } else {
+            donationRepository.delete(donation);
+            donationStatsService.recordDeletion(donation);
+        }
+        // Пока событие создания не обработано, пожертвование еще не попало в агрегаты
+        if (!outboxEventRepository.existsByEventTypeAndEntityId(OutboxEvent.Type.DONATION_CREATED, id)) {
+            donationRollupService.recordDeletion(donation);
+        }
+        eventPublisher.publishEvent(new FundraisingChangedEvent(
+                donation.getFundraising().getId(), donation.getFundraising().getCharity().getId()));
         log.info("Пожертвование успешно удалено: {}", id);
     }
 
+    // Ручное проведение платежа (например, подтвержденного банком вне шлюза)
     @Transactional
     public void updateDonationStatus(Long donationId, Donation.PaymentStatus status) {
         log.info("Updating donation status: {} -> {}", donationId, status);
@@ -216,37 +409,37 @@ public class DonationService {
                     return new RuntimeException("Donation not found");
                 });
         
-        if (donation.getPaymentStatus() == Donation.PaymentStatus.COMPLETED) {
-            log.warn("Attempt to update completed donation: {}", donationId);
-            throw new RuntimeException("Cannot update completed donation");
+        if (donation.getPaymentStatus() != Donation.PaymentStatus.PENDING) {
+            log.warn("Attempt to update processed donation: {}", donationId);
+            throw new RuntimeException("Cannot update processed donation");
         }
 
-        donation.setPaymentStatus(status);
-        donationRepository.save(donation);
-        log.info("Donation status updated successfully: {} -> {}", donationId, status);
-
         if (status == Donation.PaymentStatus.COMPLETED) {
-            checkFundraisingCompletion(donation.getFundraising());
+            completePayment(donationId);
+        } else if (status == Donation.PaymentStatus.FAILED) {
+            failPayment(donationId, "Payment marked as failed manually");
+        } else {
+            throw new RuntimeException("Unsupported donation status: " + status);
         }
+        log.info("Donation status updated successfully: {} -> {}", donationId, status);
     }
 
-    private String generateTransactionId() {
-        return UUID.randomUUID().toString();
+    // По умолчанию новые пожертвования первыми; id разводит пожертвования с одинаковым временем
+    private Pageable historyPageable(int page, int size, String direction) {
+        Sort.Direction sortDirection = "asc".equalsIgnoreCase(direction) ? Sort.Direction.ASC : Sort.Direction.DESC;
+        return PageRequest.of(Math.max(0, page), Math.max(1, Math.min(size, MAX_PAGE_SIZE)),
+                Sort.by(sortDirection, "createdAt", "id"));
     }
-    
-    private void updateFundraisingAmount(Fundraising fundraising, BigDecimal amount) {
-        log.debug("Updating fundraising amount: {} + {}", fundraising.getId(), amount);
-        fundraising.setCurrentAmount(fundraising.getCurrentAmount().add(amount));
-        fundraisingRepository.save(fundraising);
-        log.info("Fundraising amount updated. New amount: {}", fundraising.getCurrentAmount());
+
+    private OffsetPage<DonationHistoryItem> toPage(Slice<DonationHistoryItem> slice) {
+        return new OffsetPage<>(slice.getContent(), slice.getNumber(), slice.getSize(), slice.hasNext());
     }
 
-    private void checkFundraisingCompletion(Fundraising fundraising) {
-        if (fundraising.getCurrentAmount().compareTo(fundraising.getTargetAmount()) >= 0) {
-            log.info("Fundraising {} reached its target amount. Marking as completed.", fundraising.getId());
-            fundraising.setCompleted(true);
-            fundraising.setActive(false);
-            fundraisingRepository.save(fundraising);
-        }
+    private boolean isGeneralFund(Fundraising fundraising) {
+        return fundraising.getTargetAmount().compareTo(GENERAL_FUND_TARGET) >= 0;
+    }
+
+    private String generateTransactionId() {
+        return UUID.randomUUID().toString();
     }
-} 
\ No newline at end of file
+}
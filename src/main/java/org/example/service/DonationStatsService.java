@@ -0,0 +1,202 @@
+package org.example.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.dto.CharityDonationStatsView;
+import org.example.dto.StatsRebuildResult;
+import org.example.model.CharityStats;
+import org.example.model.Donation;
+import org.example.model.FundraisingStats;
+import org.example.repository.CharityStatsRepository;
+import org.example.repository.DonationRepository;
+import org.example.repository.FundraisingStatsRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * Поддерживает таблицы charity_stats и fundraising_stats в актуальном состоянии.
+ * Все методы выполняются в транзакции вызывающего кода, чтобы статистика
+ * менялась атомарно вместе с самими пожертвованиями.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DonationStatsService {
+
+    private static final LongSupplier NO_DONORS = () -> 0;
+
+    private final FundraisingStatsRepository fundraisingStatsRepository;
+    private final CharityStatsRepository charityStatsRepository;
+    private final DonationRepository donationRepository;
+
+    // Учитывает пачку отложенных пожертвований одной кампании и помечает их учтенными.
+    // Донор считается новым, если у него еще нет учтенных пожертвований
+    @Transactional
+    public void recordDonations(List<Donation> donations) {
+        if (donations.isEmpty()) {
+            return;
+        }
+        Long fundraisingId = donations.get(0).getFundraising().getId();
+        Long charityId = donations.get(0).getFundraising().getCharity().getId();
+
+        BigDecimal amount = BigDecimal.ZERO;
+        long recurring = 0;
+        Set<Long> userIds = new HashSet<>();
+        for (Donation donation : donations) {
+            amount = amount.add(completedAmount(donation.getPaymentStatus(), donation.getAmount()));
+            recurring += donation.isRecurring() ? 1 : 0;
+            userIds.add(donation.getUser().getId());
+        }
+
+        // Пачка помечается учтенной до applyDelta: пересчет строки статистики с нуля должен ее включить,
+        // поэтому новые доноры - те, у кого нет учтенных пожертвований вне пачки
+        List<Long> ids = donations.stream().map(Donation::getId).collect(Collectors.toList());
+        donationRepository.markTotalsApplied(ids);
+        applyDelta(fundraisingId, charityId, amount, recurring, donations.size(),
+                () -> userIds.stream()
+                        .filter(userId -> !donationRepository.existsByFundraisingIdAndUserIdAndIdNotInAndTotalsAppliedTrue(
+                                fundraisingId, userId, ids))
+                        .count(),
+                () -> userIds.stream()
+                        .filter(userId -> !donationRepository.existsByFundraisingCharityIdAndUserIdAndIdNotInAndTotalsAppliedTrue(
+                                charityId, userId, ids))
+                        .count());
+    }
+
+    // Возврат пачки пожертвований кампании: уменьшается только сумма
+    @Transactional
+    public void recordRefunds(Long fundraisingId, Long charityId, BigDecimal amount) {
+        if (amount.signum() == 0) {
+            return;
+        }
+        applyDelta(fundraisingId, charityId, amount.negate(), 0, 0, NO_DONORS, NO_DONORS);
+    }
+
+    // Вызывается после удаления пожертвования
+    @Transactional
+    public void recordDeletion(Donation donation) {
+        Long fundraisingId = donation.getFundraising().getId();
+        Long charityId = donation.getFundraising().getCharity().getId();
+        Long userId = donation.getUser().getId();
+
+        applyDelta(fundraisingId, charityId,
+                completedAmount(donation.getPaymentStatus(), donation.getAmount()).negate(),
+                donation.isRecurring() ? -1 : 0, -1,
+                () -> donationRepository.existsByFundraisingIdAndUserIdAndIdNotAndTotalsAppliedTrue(
+                        fundraisingId, userId, donation.getId()) ? 0 : -1,
+                () -> donationRepository.existsByFundraisingCharityIdAndUserIdAndIdNotAndTotalsAppliedTrue(
+                        charityId, userId, donation.getId()) ? 0 : -1);
+    }
+
+    // Вызывается после удаления кампании вместе с ее пожертвованиями
+    @Transactional
+    public void removeFundraising(Long fundraisingId, Long charityId) {
+        fundraisingStatsRepository.deleteByFundraisingId(fundraisingId);
+        refreshCharity(charityId);
+    }
+
+    @Transactional
+    public void removeCharity(Long charityId) {
+        fundraisingStatsRepository.deleteByCharityId(charityId);
+        charityStatsRepository.deleteByCharityId(charityId);
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<FundraisingStats> getFundraisingStats(Long fundraisingId) {
+        return fundraisingStatsRepository.findById(fundraisingId);
+    }
+
+    @Transactional(readOnly = true)
+    public List<CharityStats> getCharityStats(List<Long> charityIds) {
+        return charityStatsRepository.findAllById(charityIds);
+    }
+
+    @Transactional(readOnly = true)
+    public StatsRebuildResult verify() {
+        long fundraisingMismatches = fundraisingStatsRepository.countMismatches();
+        long charityMismatches = charityStatsRepository.countMismatches();
+        log.info("Проверка статистики: расхождений по кампаниям {}, по организациям {}",
+                fundraisingMismatches, charityMismatches);
+        return new StatsRebuildResult(fundraisingMismatches, charityMismatches, 0, 0);
+    }
+
+    // Полный пересчет таблиц статистики из donations. Лучше запускать в период низкой нагрузки:
+    // пожертвования, записанные параллельно с пересчетом, могут потребовать повторного запуска
+    @Transactional
+    public StatsRebuildResult rebuild() {
+        StatsRebuildResult result = verify();
+
+        fundraisingStatsRepository.deleteAllRows();
+        charityStatsRepository.deleteAllRows();
+        result.setFundraisingRows(fundraisingStatsRepository.rebuildAll());
+        result.setCharityRows(charityStatsRepository.rebuildAll());
+
+        log.info("Статистика пересчитана: {} кампаний, {} организаций",
+                result.getFundraisingRows(), result.getCharityRows());
+        return result;
+    }
+
+    // Строки статистики сначала блокируются обновлением без доноров, и только потом проверяется,
+    // новый ли донор: параллельная транзакция с пожертвованием того же пользователя к этому моменту
+    // уже закоммичена и видна проверке, поэтому донор не учитывается дважды
+    private void applyDelta(Long fundraisingId, Long charityId, BigDecimal amount, long recurring, long donations,
+            LongSupplier fundraisingDonors, LongSupplier charityDonors) {
+        LocalDateTime now = LocalDateTime.now();
+
+        // Если строки еще нет (кампания создана до появления статистики), она считается целиком
+        // вместе с текущими пожертвованиями, и доноров добавлять не нужно
+        boolean fundraisingCreated = false;
+        if (fundraisingStatsRepository.applyDelta(fundraisingId, amount, 0, recurring, donations, now) == 0) {
+            fundraisingCreated = fundraisingStatsRepository.insertIfAbsent(fundraisingId, charityId, now) > 0;
+            if (!fundraisingCreated) {
+                // Строку только что вставила параллельная транзакция, не видевшая этих пожертвований
+                fundraisingStatsRepository.applyDelta(fundraisingId, amount, 0, recurring, donations, now);
+            }
+        }
+        boolean charityCreated = false;
+        if (charityStatsRepository.applyDelta(charityId, amount, 0, recurring, donations, now) == 0) {
+            charityCreated = charityStatsRepository.insertIfAbsent(charityId, now) > 0;
+            if (!charityCreated) {
+                charityStatsRepository.applyDelta(charityId, amount, 0, recurring, donations, now);
+            }
+        }
+
+        long newFundraisingDonors = fundraisingCreated ? 0 : fundraisingDonors.getAsLong();
+        if (newFundraisingDonors != 0) {
+            fundraisingStatsRepository.applyDelta(fundraisingId, BigDecimal.ZERO, newFundraisingDonors, 0, 0, now);
+        }
+        long newCharityDonors = charityCreated ? 0 : charityDonors.getAsLong();
+        if (newCharityDonors != 0) {
+            charityStatsRepository.applyDelta(charityId, BigDecimal.ZERO, newCharityDonors, 0, 0, now);
+        }
+    }
+
+    private void refreshCharity(Long charityId) {
+        CharityStats stats = new CharityStats();
+        stats.setCharityId(charityId);
+        List<CharityDonationStatsView> rows = donationRepository
+                .getDonationStatsByCharityIds(List.of(charityId));
+        if (!rows.isEmpty()) {
+            CharityDonationStatsView row = rows.get(0);
+            stats.setTotalAmount(row.getTotalAmount());
+            stats.setDonorCount(row.getDonorCount());
+            stats.setRecurringCount(row.getRecurringCount());
+            stats.setDonationCount(row.getDonationCount());
+        }
+        stats.setUpdatedAt(LocalDateTime.now());
+        charityStatsRepository.save(stats);
+    }
+
+    private BigDecimal completedAmount(Donation.PaymentStatus status, BigDecimal amount) {
+        return status == Donation.PaymentStatus.COMPLETED ? amount : BigDecimal.ZERO;
+    }
+}
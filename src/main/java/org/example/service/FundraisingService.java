@@ -1,44 +1,77 @@
 package org.example.service;
 
 import lombok.extern.slf4j.Slf4j;
+import org.example.dto.CursorPage;
+import org.example.dto.DocumentDTO;
+import org.example.dto.FundraisingDetailsResponse;
 import org.example.dto.FundraisingRequest;
+import org.example.dto.FundraisingSummary;
+import org.example.event.FundraisingChangedEvent;
 import org.example.model.Charity;
+import org.example.model.Document;
 import org.example.model.Fundraising;
+import org.example.model.FundraisingStats;
+import org.example.model.RefundJob;
 import org.example.model.User;
 import org.example.repository.CharityRepository;
 import org.example.repository.DonationRepository;
 import org.example.repository.FundraisingRepository;
 import org.example.repository.ReportRepository;
 import org.example.repository.UserRepository;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.context.annotation.Lazy;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 public class FundraisingService {
 
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final FundraisingRepository fundraisingRepository;
     private final CharityRepository charityRepository;
     private final DonationRepository donationRepository;
     private final ReportRepository reportRepository;
+    private final ReportService reportService;
     private final UserRepository userRepository;
+    private final DonationStatsService donationStatsService;
+    private final ResponseCacheService responseCacheService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final RefundJobService refundJobService;
 
     public FundraisingService(
             FundraisingRepository fundraisingRepository,
             CharityRepository charityRepository,
             DonationRepository donationRepository,
             @Lazy ReportRepository reportRepository,
-            UserRepository userRepository) {
+            @Lazy ReportService reportService,
+            UserRepository userRepository,
+            DonationStatsService donationStatsService,
+            ResponseCacheService responseCacheService,
+            ApplicationEventPublisher eventPublisher,
+            TransactionTemplate transactionTemplate,
+            RefundJobService refundJobService) {
         this.fundraisingRepository = fundraisingRepository;
         this.charityRepository = charityRepository;
         this.donationRepository = donationRepository;
         this.reportRepository = reportRepository;
+        this.reportService = reportService;
         this.userRepository = userRepository;
+        this.donationStatsService = donationStatsService;
+        this.responseCacheService = responseCacheService;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = transactionTemplate;
+        this.refundJobService = refundJobService;
     }
 
     @Transactional
@@ -77,6 +110,7 @@ public class FundraisingService {
         fundraising.setCreatedAt(LocalDateTime.now());
 
         fundraising = fundraisingRepository.save(fundraising);
+        eventPublisher.publishEvent(new FundraisingChangedEvent(fundraising.getId(), charity.getId()));
         log.info("Фандрайзинговая кампания успешно создана, ID: {}", fundraising.getId());
 
         return fundraising;
@@ -88,20 +122,40 @@ public class FundraisingService {
         return fundraisingRepository.findAll();
     }
 
+    @Transactional(readOnly = true)
+    public CursorPage<FundraisingSummary> getFundraisingSummaries(Long after, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        log.debug("Получение страницы кампаний после ID {} (лимит {})", after, pageSize);
+
+        // Запрашиваем на одну запись больше, чтобы понять, есть ли следующая страница
+        List<FundraisingSummary> summaries = fundraisingRepository.findSummariesAfter(
+                after != null ? after : 0L, PageRequest.of(0, pageSize + 1));
+        boolean hasMore = summaries.size() > pageSize;
+        if (hasMore) {
+            summaries = summaries.subList(0, pageSize);
+        }
+
+        String nextCursor = hasMore ? String.valueOf(summaries.get(summaries.size() - 1).getId()) : null;
+        return new CursorPage<>(summaries, nextCursor);
+    }
+
     @Transactional(readOnly = true)
     public List<Fundraising> getActiveFundraisings() {
         log.debug("Получение списка активных фандрайзинговых кампаний");
         return fundraisingRepository.findByActiveTrue();
     }
 
-    @Transactional(readOnly = true)
-    public Fundraising getFundraisingById(Long id) {
+    // Без @Transactional: при попадании в кэш соединение с базой не берется
+    public FundraisingDetailsResponse getFundraisingById(Long id) {
         log.debug("Поиск фандрайзинговой кампании по ID: {}", id);
-        return fundraisingRepository.findById(id)
-                .orElseThrow(() -> {
-                    log.error("Фандрайзинговая кампания с ID {} не найдена", id);
-                    return new RuntimeException("Фандрайзинговая кампания не найдена");
-                });
+        return responseCacheService.getFundraising(id, () -> transactionTemplate.execute(status -> {
+            Fundraising fundraising = fundraisingRepository.findById(id)
+                    .orElseThrow(() -> {
+                        log.error("Фандрайзинговая кампания с ID {} не найдена", id);
+                        return new RuntimeException("Фандрайзинговая кампания не найдена");
+                    });
+            return convertToDetails(fundraising);
+        }));
     }
 
     @Transactional(readOnly = true)
@@ -134,6 +188,7 @@ public class FundraisingService {
         fundraising.setImageUrl(request.getImageUrl());
 
         fundraising = fundraisingRepository.save(fundraising);
+        eventPublisher.publishEvent(new FundraisingChangedEvent(id, fundraising.getCharity().getId()));
         log.info("Данные фандрайзинговой кампании успешно обновлены: {}", fundraising.getId());
 
         return fundraising;
@@ -164,21 +219,110 @@ public class FundraisingService {
         fundraising.setCompleted(true);
         
         fundraisingRepository.save(fundraising);
+        eventPublisher.publishEvent(new FundraisingChangedEvent(id, fundraising.getCharity().getId()));
         log.info("Фандрайзинговая кампания {} успешно завершена. Собрано: {} из {}", 
                 id, totalAmount, fundraising.getTargetAmount());
     }
 
+    // Отмена кампании: прием пожертвований прекращается, а собранное возвращается донорам фоновой задачей
     @Transactional
-    public void deleteFundraising(Long id) {
+    public RefundJob cancelFundraising(Long id, Long userId) {
+        log.info("Запрос на отмену фандрайзинговой кампании {} от пользователя {}", id, userId);
+
+        Fundraising fundraising = fundraisingRepository.findById(id)
+                .orElseThrow(() -> {
+                    log.error("Невозможно отменить: кампания с ID {} не найдена", id);
+                    return new RuntimeException("Фандрайзинговая кампания не найдена");
+                });
+
+        boolean admin = userRepository.findById(userId).map(user -> "ADMIN".equals(user.getRole())).orElse(false);
+        if (!admin && !fundraising.getCreatedBy().getId().equals(userId)) {
+            log.warn("Пользователь {} пытается отменить чужую кампанию {}", userId, id);
+            throw new RuntimeException("Отменить кампанию может только ее создатель");
+        }
+        if (fundraising.getTargetAmount().compareTo(DonationService.GENERAL_FUND_TARGET) >= 0) {
+            throw new RuntimeException("Общий фонд организации нельзя отменить");
+        }
+
+        return deactivateAndRefund(fundraising, false, userId);
+    }
+
+    // Кампания с оплаченными пожертвованиями удаляется после их возврата; возвращается задача возврата
+    // или null, если кампания удалена сразу
+    @Transactional
+    public RefundJob deleteFundraising(Long id, Long userId) {
         log.info("Запрос на удаление фандрайзинговой кампании с ID: {}", id);
 
-        if (!fundraisingRepository.existsById(id)) {
-            log.error("Невозможно удалить: кампания с ID {} не найдена", id);
-            throw new RuntimeException("Фандрайзинговая кампания не найдена");
+        Fundraising fundraising = fundraisingRepository.findById(id)
+                .orElseThrow(() -> {
+                    log.error("Невозможно удалить: кампания с ID {} не найдена", id);
+                    return new RuntimeException("Фандрайзинговая кампания не найдена");
+                });
+
+        if (refundJobService.hasRefundableDonations(id)) {
+            return deactivateAndRefund(fundraising, true, userId);
         }
 
-        fundraisingRepository.deleteById(id);
+        Long charityId = fundraising.getCharity().getId();
+        fundraisingRepository.delete(fundraising);
+        donationStatsService.removeFundraising(id, charityId);
+        eventPublisher.publishEvent(new FundraisingChangedEvent(id, charityId));
         log.info("Фандрайзинговая кампания успешно удалена: {}", id);
+        return null;
+    }
+
+    private RefundJob deactivateAndRefund(Fundraising fundraising, boolean delete, Long userId) {
+        if (fundraising.isActive()) {
+            fundraising.setActive(false);
+            fundraisingRepository.save(fundraising);
+        }
+        eventPublisher.publishEvent(new FundraisingChangedEvent(fundraising.getId(), fundraising.getCharity().getId()));
+        return refundJobService.startRefund(fundraising, delete, userId);
+    }
+
+    // В кэш попадает готовый снимок ответа, а не сущность с графом связей
+    private FundraisingDetailsResponse convertToDetails(Fundraising fundraising) {
+        Optional<FundraisingStats> stats = donationStatsService.getFundraisingStats(fundraising.getId());
+        List<DocumentDTO> documents = fundraising.getDocuments().stream()
+                .map(this::convertDocumentToDTO)
+                .collect(Collectors.toList());
+        return new FundraisingDetailsResponse(
+                fundraising.getId(),
+                fundraising.getCharity().getId(),
+                fundraising.getTitle(),
+                fundraising.getDescription(),
+                fundraising.getTargetAmount(),
+                fundraising.getCurrentAmount(),
+                fundraising.getStartDate(),
+                fundraising.getEndDate(),
+                fundraising.getCreatedAt(),
+                fundraising.getImageUrl(),
+                fundraising.isActive(),
+                fundraising.isCompleted(),
+                fundraising.getDiagnosis(),
+                fundraising.getCreatedBy().getId(),
+                userName(fundraising.getCreatedBy()),
+                List.copyOf(documents),
+                List.copyOf(reportService.getFundraisingReportSummaries(fundraising.getId())),
+                stats.map(FundraisingStats::getTotalAmount).orElse(BigDecimal.ZERO),
+                stats.map(FundraisingStats::getDonorCount).orElse(0L),
+                stats.map(FundraisingStats::getDonationCount).orElse(0L),
+                stats.map(FundraisingStats::getRecurringCount).orElse(0L));
+    }
+
+    private String userName(User user) {
+        String firstName = user.getFirstName();
+        String lastName = user.getLastName();
+        String name = ((firstName != null ? firstName : "") + " " + (lastName != null ? lastName : "")).trim();
+        return name.isEmpty() ? null : name;
+    }
+
+    private DocumentDTO convertDocumentToDTO(Document document) {
+        DocumentDTO dto = new DocumentDTO();
+        dto.setUrl(document.getUrl());
+        dto.setTitle(document.getTitle());
+        dto.setDescription(document.getDescription());
+        return dto;
     }
 
     @Transactional(readOnly = true)
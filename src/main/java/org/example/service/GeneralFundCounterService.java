@@ -0,0 +1,196 @@
+package org.example.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.event.FundraisingChangedEvent;
+import org.example.event.GeneralFundDonationEvent;
+import org.example.model.Donation;
+import org.example.repository.DonationRepository;
+import org.example.repository.FundraisingRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Отложенный учет пожертвований в общие фонды. Строка "Общий фонд помощи" получает все
+ * пожертвования без fundraisingId, поэтому обновлять ее на каждое пожертвование - значит
+ * выстраивать их в очередь за блокировкой строки. Вместо этого пожертвование пишется
+ * с totals_applied = false, сумма копится в LongAdder (в копейках), а сброс раз в интервал
+ * или по порогу переносит накопленное в current_amount и статистику одним UPDATE на пачку.
+ * Источник истины - сами строки donations, поэтому после падения ничего не теряется:
+ * при старте неучтенные строки досчитываются.
+ */
+@Slf4j
+@Service
+public class GeneralFundCounterService {
+
+    private final DonationRepository donationRepository;
+    private final FundraisingRepository fundraisingRepository;
+    private final DonationStatsService donationStatsService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final int flushThreshold;
+    private final int batchSize;
+
+    private final Map<Long, LongAdder> pendingMinorUnits = new ConcurrentHashMap<>();
+    private final Map<Long, LongAdder> pendingCounts = new ConcurrentHashMap<>();
+    private final Set<Long> thresholdFlushes = ConcurrentHashMap.newKeySet();
+    private final Map<Long, ReentrantLock> flushLocks = new ConcurrentHashMap<>();
+    private final ExecutorService flushExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "general-fund-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public GeneralFundCounterService(
+            DonationRepository donationRepository,
+            FundraisingRepository fundraisingRepository,
+            DonationStatsService donationStatsService,
+            ApplicationEventPublisher eventPublisher,
+            TransactionTemplate transactionTemplate,
+            @Value("${app.general-fund.flush-threshold:500}") int flushThreshold,
+            @Value("${app.general-fund.batch-size:500}") int batchSize) {
+        this.donationRepository = donationRepository;
+        this.fundraisingRepository = fundraisingRepository;
+        this.donationStatsService = donationStatsService;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = transactionTemplate;
+        this.flushThreshold = flushThreshold;
+        this.batchSize = batchSize;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onGeneralFundDonation(GeneralFundDonationEvent event) {
+        Long fundraisingId = event.getFundraisingId();
+        adder(pendingMinorUnits, fundraisingId).add(toMinorUnits(event.getAmount()));
+        LongAdder count = adder(pendingCounts, fundraisingId);
+        count.add(event.getAmount().signum() < 0 ? -1 : 1);
+        if (count.sum() >= flushThreshold && thresholdFlushes.add(fundraisingId)) {
+            flushExecutor.execute(() -> {
+                thresholdFlushes.remove(fundraisingId);
+                flush(fundraisingId);
+            });
+        }
+    }
+
+    // При старте досчитывает пожертвования, записанные до остановки или падения приложения,
+    // а затем редко страхует счетчики, которые лишь подсказывают, какие фонды сбрасывать
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${app.general-fund.sweep-interval-ms:60000}",
+            fixedDelayString = "${app.general-fund.sweep-interval-ms:60000}")
+    public void sweepPending() {
+        List<Long> fundraisingIds = donationRepository.findGeneralFundIdsWithPendingTotals(DonationService.GENERAL_FUND_TARGET);
+        if (!fundraisingIds.isEmpty()) {
+            log.info("Найдены неучтенные пожертвования общих фондов: {}", fundraisingIds);
+            fundraisingIds.forEach(this::flush);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.general-fund.flush-interval-ms:1000}")
+    public void flushAll() {
+        new ArrayList<>(pendingCounts.keySet()).stream()
+                .filter(fundraisingId -> pendingCounts.get(fundraisingId).sum() > 0)
+                .forEach(this::flush);
+    }
+
+    // Сбросы одного фонда в процессе не пересекаются, разные фонды сбрасываются параллельно;
+    // между процессами их разводит FOR UPDATE. Событие изменения публикуется один раз на сброс,
+    // уже после коммита пачек, поэтому версия ETag не держит строку фонда в транзакции сброса
+    public void flush(Long fundraisingId) {
+        ReentrantLock lock = flushLocks.computeIfAbsent(fundraisingId, id -> new ReentrantLock());
+        lock.lock();
+        try {
+            Long charityId = null;
+            List<Donation> batch;
+            do {
+                batch = flushBatch(fundraisingId);
+                if (!batch.isEmpty()) {
+                    charityId = batch.get(0).getFundraising().getCharity().getId();
+                }
+            } while (batch.size() == batchSize);
+            // Отрицательный счетчик возможен после досчета строк, записанных до старта
+            clampToZero(adder(pendingCounts, fundraisingId));
+            clampToZero(adder(pendingMinorUnits, fundraisingId));
+            if (charityId != null) {
+                eventPublisher.publishEvent(new FundraisingChangedEvent(fundraisingId, charityId));
+            }
+        } catch (Exception e) {
+            log.error("Ошибка сброса счетчика общего фонда {}: {}", fundraisingId, e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Map<Long, BigDecimal> getPendingAmounts() {
+        Map<Long, BigDecimal> result = new LinkedHashMap<>();
+        pendingMinorUnits.forEach((fundraisingId, units) ->
+                result.put(fundraisingId, BigDecimal.valueOf(units.sum(), 2)));
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushExecutor.shutdown();
+    }
+
+    private List<Donation> flushBatch(Long fundraisingId) {
+        List<Donation> batch = transactionTemplate.execute(status -> {
+            List<Long> ids = donationRepository.lockPendingTotals(fundraisingId, batchSize);
+            if (ids.isEmpty()) {
+                return List.<Donation>of();
+            }
+            List<Donation> donations = donationRepository.findAllById(ids);
+            BigDecimal total = donations.stream()
+                    .filter(donation -> donation.getPaymentStatus() == Donation.PaymentStatus.COMPLETED)
+                    .map(Donation::getAmount)
+                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+
+            donationStatsService.recordDonations(donations);
+            fundraisingRepository.incrementCurrentAmount(fundraisingId, total);
+            log.debug("Общий фонд {}: учтено {} пожертвований на сумму {}", fundraisingId, donations.size(), total);
+            return donations;
+        });
+
+        // Счетчики уменьшаем только после коммита, на величину реально учтенных строк
+        if (batch != null && !batch.isEmpty()) {
+            long units = batch.stream().mapToLong(donation -> toMinorUnits(donation.getAmount())).sum();
+            adder(pendingMinorUnits, fundraisingId).add(-units);
+            adder(pendingCounts, fundraisingId).add(-batch.size());
+        }
+        return batch != null ? batch : List.of();
+    }
+
+    // Ключи не удаляются: общих фондов столько же, сколько организаций
+    private LongAdder adder(Map<Long, LongAdder> adders, Long fundraisingId) {
+        return adders.computeIfAbsent(fundraisingId, id -> new LongAdder());
+    }
+
+    private void clampToZero(LongAdder adder) {
+        long value = adder.sum();
+        if (value < 0) {
+            adder.add(-value);
+        }
+    }
+
+    private long toMinorUnits(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.HALF_UP).movePointRight(2).longValueExact();
+    }
+}
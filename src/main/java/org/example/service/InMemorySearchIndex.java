@@ -0,0 +1,187 @@
+package org.example.service;
+
+import org.example.dto.SearchResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * Встроенный инвертированный индекс для поиска без PostgreSQL (H2 и тестовые профили).
+ * Термы запроса объединяются по AND; терм от трех символов совпадает и как префикс,
+ * что грубо заменяет стемминг русских словоформ.
+ */
+class InMemorySearchIndex {
+
+    private static final int MIN_PREFIX_LENGTH = 3;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final NavigableMap<String, Map<String, Double>> postings = new TreeMap<>();
+    private final Map<String, Document> documents = new HashMap<>();
+
+    static final class Field {
+        final String text;
+        final double weight;
+
+        Field(String text, double weight) {
+            this.text = text;
+            this.weight = weight;
+        }
+    }
+
+    private static final class Document {
+        final String type;
+        final Long id;
+        final String title;
+        final String description;
+        final Map<String, Double> terms;
+
+        Document(String type, Long id, String title, String description, Map<String, Double> terms) {
+            this.type = type;
+            this.id = id;
+            this.title = title;
+            this.description = description;
+            this.terms = terms;
+        }
+    }
+
+    void put(String type, Long id, String title, String description, Field... fields) {
+        Map<String, Double> terms = new HashMap<>();
+        for (Field field : fields) {
+            for (String token : tokenize(field.text)) {
+                terms.merge(token, field.weight, Double::sum);
+            }
+        }
+        String key = key(type, id);
+        Document document = new Document(type, id, title, description, terms);
+
+        lock.writeLock().lock();
+        try {
+            removeLocked(key);
+            documents.put(key, document);
+            terms.forEach((term, weight) -> postings.computeIfAbsent(term, t -> new HashMap<>()).put(key, weight));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(String type, Long id) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(key(type, id));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void clear() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            documents.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Возвращает все совпадения, отсортированные по убыванию релевантности.
+     */
+    List<SearchResult> search(String query) {
+        Set<String> queryTerms = new LinkedHashSet<>(tokenize(query));
+        if (queryTerms.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        lock.readLock().lock();
+        try {
+            Map<String, Double> scores = null;
+            for (String term : queryTerms) {
+                Map<String, Double> termScores = match(term);
+                if (scores == null) {
+                    scores = termScores;
+                } else {
+                    scores.keySet().retainAll(termScores.keySet());
+                    scores.replaceAll((key, score) -> score + termScores.get(key));
+                }
+                if (scores.isEmpty()) {
+                    return new ArrayList<>();
+                }
+            }
+
+            return scores.entrySet().stream()
+                    .map(entry -> {
+                        Document document = documents.get(entry.getKey());
+                        return new SearchResult(document.type, document.id, document.title,
+                                document.description, entry.getValue());
+                    })
+                    .sorted(Comparator.comparingDouble(SearchResult::getRank).reversed()
+                            .thenComparing(SearchResult::getType)
+                            .thenComparing(SearchResult::getId))
+                    .collect(Collectors.toList());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Для каждого документа берется лучший вес среди подходящих токенов
+    private Map<String, Double> match(String term) {
+        Map<String, Double> result = new HashMap<>();
+        Map<String, Map<String, Double>> matched = term.length() >= MIN_PREFIX_LENGTH
+                ? postings.subMap(term, true, term + Character.MAX_VALUE, false)
+                : postings.containsKey(term) ? Map.of(term, postings.get(term)) : Map.of();
+        matched.forEach((token, docs) -> {
+            // Точное совпадение весит больше, чем совпадение по префиксу
+            double factor = token.equals(term) ? 1.0 : 0.5;
+            docs.forEach((key, weight) -> result.merge(key, weight * factor, Math::max));
+        });
+        return result;
+    }
+
+    private void removeLocked(String key) {
+        Document previous = documents.remove(key);
+        if (previous == null) {
+            return;
+        }
+        previous.terms.keySet().forEach(term -> {
+            Map<String, Double> docs = postings.get(term);
+            docs.remove(key);
+            if (docs.isEmpty()) {
+                postings.remove(term);
+            }
+        });
+    }
+
+    private static String key(String type, Long id) {
+        return type + ":" + id;
+    }
+
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return new ArrayList<>();
+        }
+        return Arrays.stream(text.toLowerCase(Locale.ROOT).replace('ё', 'е').split("[^\\p{L}\\p{N}]+"))
+                .filter(token -> token.length() >= 2 || (token.length() == 1 && Character.isDigit(token.charAt(0))))
+                .collect(Collectors.toList());
+    }
+}
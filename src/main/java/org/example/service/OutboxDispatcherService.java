@@ -0,0 +1,151 @@
+package org.example.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.model.OutboxEvent;
+import org.example.repository.OutboxEventRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Фоновая обработка исходящих событий (таблица outbox_events). События читаются пачками
+ * и группируются по агрегату; каждая группа обрабатывается в своей транзакции вместе
+ * с удалением событий, поэтому побочные эффекты применяются ровно один раз.
+ * Если группа падает, ее события обрабатываются по одному: успешные удаляются, сбойное
+ * откладывается с экспоненциальной задержкой (после max-attempts - FAILED), а более поздние
+ * события того же агрегата ждут его, сохраняя порядок.
+ */
+@Slf4j
+@Service
+public class OutboxDispatcherService {
+
+    private static final long MAX_RETRY_DELAY_MS = 300_000;
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final DonationService donationService;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long retryBaseDelayMs;
+
+    public OutboxDispatcherService(
+            OutboxEventRepository outboxEventRepository,
+            DonationService donationService,
+            TransactionTemplate transactionTemplate,
+            @Value("${app.outbox.batch-size:200}") int batchSize,
+            @Value("${app.outbox.max-attempts:10}") int maxAttempts,
+            @Value("${app.outbox.retry-base-delay-ms:1000}") long retryBaseDelayMs) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.donationService = donationService;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.retryBaseDelayMs = retryBaseDelayMs;
+    }
+
+    @Scheduled(fixedDelayString = "${app.outbox.poll-interval-ms:200}")
+    public void dispatch() {
+        List<OutboxEvent> events;
+        do {
+            events = outboxEventRepository.findReady(LocalDateTime.now(), PageRequest.of(0, batchSize));
+            Map<Long, List<OutboxEvent>> byAggregate = events.stream()
+                    .collect(Collectors.groupingBy(OutboxEvent::getAggregateId, LinkedHashMap::new, Collectors.toList()));
+            byAggregate.forEach(this::dispatchGroup);
+        } while (events.size() == batchSize);
+    }
+
+    public Map<String, Long> getStatus() {
+        Map<String, Long> status = new LinkedHashMap<>();
+        status.put("pending", outboxEventRepository.countByStatus(OutboxEvent.Status.PENDING));
+        status.put("failed", outboxEventRepository.countByStatus(OutboxEvent.Status.FAILED));
+        return status;
+    }
+
+    @Transactional
+    public int retryFailed() {
+        int reset = outboxEventRepository.resetFailed(LocalDateTime.now());
+        log.info("Возвращено в очередь {} исходящих событий с ошибками", reset);
+        return reset;
+    }
+
+    private void dispatchGroup(Long aggregateId, List<OutboxEvent> events) {
+        try {
+            process(aggregateId, events);
+        } catch (Exception e) {
+            log.warn("Ошибка обработки исходящих событий кампании {}, обрабатываем по одному: {}",
+                    aggregateId, e.getMessage());
+            dispatchOneByOne(aggregateId, events);
+        }
+    }
+
+    // Повтор и FAILED достаются только сбойному событию; следующие события агрегата ждут его в findReady
+    private void dispatchOneByOne(Long aggregateId, List<OutboxEvent> events) {
+        for (OutboxEvent event : events) {
+            try {
+                process(aggregateId, List.of(event));
+            } catch (Exception e) {
+                log.error("Ошибка обработки исходящего события {} кампании {}: {}",
+                        event.getId(), aggregateId, e.getMessage());
+                scheduleRetry(event, e);
+                return;
+            }
+        }
+    }
+
+    private void process(Long aggregateId, List<OutboxEvent> events) {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Long> lockedIds = outboxEventRepository.lockPending(
+                    events.stream().map(OutboxEvent::getId).collect(Collectors.toList()));
+            if (lockedIds.isEmpty()) {
+                return;
+            }
+            List<Long> donationIds = events.stream()
+                    .filter(event -> lockedIds.contains(event.getId()))
+                    .filter(event -> event.getEventType() == OutboxEvent.Type.DONATION_CREATED)
+                    .map(OutboxEvent::getEntityId)
+                    .collect(Collectors.toList());
+            if (!donationIds.isEmpty()) {
+                donationService.processCreatedDonations(aggregateId, donationIds);
+            }
+            outboxEventRepository.deleteByIds(lockedIds);
+        });
+    }
+
+    private void scheduleRetry(OutboxEvent failed, Exception error) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> outboxEventRepository.findById(failed.getId())
+                    .filter(event -> event.getStatus() == OutboxEvent.Status.PENDING)
+                    .ifPresent(event -> {
+                        event.setAttempts(event.getAttempts() + 1);
+                        event.setLastError(truncate(error.getMessage()));
+                        if (event.getAttempts() >= maxAttempts) {
+                            event.setStatus(OutboxEvent.Status.FAILED);
+                            log.error("Исходящее событие {} ({}) не обработано за {} попыток",
+                                    event.getId(), event.getEventType(), event.getAttempts());
+                        } else {
+                            long delay = Math.min(retryBaseDelayMs << Math.min(event.getAttempts() - 1, 20), MAX_RETRY_DELAY_MS);
+                            event.setNextAttemptAt(LocalDateTime.now().plusNanos(delay * 1_000_000));
+                        }
+                        outboxEventRepository.save(event);
+                    }));
+        } catch (Exception e) {
+            log.error("Не удалось отложить исходящее событие {}: {}", failed.getId(), e.getMessage());
+        }
+    }
+
+    private String truncate(String message) {
+        if (message == null) {
+            return null;
+        }
+        return message.length() > 1000 ? message.substring(0, 1000) : message;
+    }
+}
@@ -0,0 +1,18 @@
+package org.example.service;
+
+import org.example.dto.PaymentResult;
+
+import java.math.BigDecimal;
+
+/**
+ * Платежный шлюз. Списание идентифицируется transactionId пожертвования: повторный вызов
+ * с тем же transactionId не списывает деньги второй раз, а возвращает прежний результат.
+ * Отказ банка возвращается как PaymentResult, временные ошибки - PaymentGatewayException.
+ */
+public interface PaymentGateway {
+
+    PaymentResult charge(String transactionId, BigDecimal amount, String paymentMethod);
+
+    // Возврат списания transactionId; повторный возврат того же списания ничего не меняет
+    PaymentResult refund(String transactionId, BigDecimal amount);
+}
@@ -0,0 +1,18 @@
+package org.example.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Общий размыкатель платежного шлюза: разовые платежи (PaymentProcessingService) и списания
+ * регулярных платежей (RecurringChargeService) видят одну и ту же серию ошибок шлюза.
+ */
+@Component
+class PaymentGatewayCircuitBreaker extends CircuitBreaker {
+
+    PaymentGatewayCircuitBreaker(
+            @Value("${app.payments.breaker.failure-threshold:5}") int failureThreshold,
+            @Value("${app.payments.breaker.open-duration-ms:30000}") long openDurationMs) {
+        super("payment-gateway", failureThreshold, openDurationMs);
+    }
+}
@@ -0,0 +1,183 @@
+package org.example.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.dto.PaymentResult;
+import org.example.model.Donation;
+import org.example.repository.DonationRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Проведение платежей по пожертвованиям. Пожертвование создается в статусе PENDING,
+ * а этот воркер вне запроса пользователя отправляет его в платежный шлюз, поэтому медленный
+ * шлюз не занимает потоки Tomcat. Одновременно выполняется не больше worker-threads вызовов;
+ * временные ошибки повторяются с экспоненциальной задержкой, а при серии ошибок размыкатель
+ * приостанавливает обращения к шлюзу. Исход записывает DonationService.completePayment / failPayment.
+ */
+@Slf4j
+@Service
+public class PaymentProcessingService {
+
+    private static final long MAX_RETRY_DELAY_MS = 300_000;
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private final DonationRepository donationRepository;
+    private final DonationService donationService;
+    private final PaymentGateway paymentGateway;
+    private final TransactionTemplate transactionTemplate;
+    private final CircuitBreaker circuitBreaker;
+    private final ExecutorService workers;
+    private final Semaphore freeWorkers;
+    private final int workerThreads;
+    private final int maxAttempts;
+    private final long retryBaseDelayMs;
+    private final long leaseMs;
+
+    public PaymentProcessingService(
+            DonationRepository donationRepository,
+            DonationService donationService,
+            PaymentGateway paymentGateway,
+            TransactionTemplate transactionTemplate,
+            CircuitBreaker circuitBreaker,
+            @Value("${app.payments.worker-threads:8}") int workerThreads,
+            @Value("${app.payments.max-attempts:8}") int maxAttempts,
+            @Value("${app.payments.retry-base-delay-ms:2000}") long retryBaseDelayMs,
+            @Value("${app.payments.lease-ms:60000}") long leaseMs) {
+        this.donationRepository = donationRepository;
+        this.donationService = donationService;
+        this.paymentGateway = paymentGateway;
+        this.transactionTemplate = transactionTemplate;
+        this.circuitBreaker = circuitBreaker;
+        this.workerThreads = workerThreads;
+        this.maxAttempts = maxAttempts;
+        this.retryBaseDelayMs = retryBaseDelayMs;
+        this.leaseMs = leaseMs;
+        this.freeWorkers = new Semaphore(workerThreads);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workerThreads, runnable -> {
+            Thread thread = new Thread(runnable, "payment-worker-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Берет в работу не больше платежей, чем свободных воркеров: остальные ждут в таблице, а не в памяти
+    @Scheduled(fixedDelayString = "${app.payments.poll-interval-ms:200}")
+    public void poll() {
+        int free = freeWorkers.availablePermits();
+        if (free == 0 || !circuitBreaker.isCallPermitted()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> dueIds = donationRepository.findDuePaymentIds(now, PageRequest.of(0, free));
+        for (Long donationId : dueIds) {
+            if (!circuitBreaker.tryAcquire()) {
+                break;
+            }
+            if (!freeWorkers.tryAcquire()) {
+                circuitBreaker.release();
+                break;
+            }
+            Donation donation = claim(donationId, now);
+            if (donation == null) {
+                freeWorkers.release();
+                circuitBreaker.release();
+                continue;
+            }
+            workers.execute(() -> {
+                try {
+                    process(donation);
+                } finally {
+                    freeWorkers.release();
+                }
+            });
+        }
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("circuitBreaker", circuitBreaker.getState().name());
+        status.put("inFlight", workerThreads - freeWorkers.availablePermits());
+        status.put("pending", donationRepository.countByPaymentStatus(Donation.PaymentStatus.PENDING));
+        status.put("failed", donationRepository.countByPaymentStatus(Donation.PaymentStatus.FAILED));
+        return status;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        // Незавершенные платежи вернутся в очередь по истечении аренды
+        workers.shutdown();
+        workers.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    private Donation claim(Long donationId, LocalDateTime now) {
+        return transactionTemplate.execute(status -> {
+            if (donationRepository.claimPayment(donationId, now, now.plusNanos(leaseMs * 1_000_000)) == 0) {
+                return null;
+            }
+            return donationRepository.findById(donationId).orElse(null);
+        });
+    }
+
+    private void process(Donation donation) {
+        PaymentResult result;
+        try {
+            result = paymentGateway.charge(donation.getTransactionId(), donation.getAmount(), donation.getPaymentMethod());
+        } catch (RuntimeException e) {
+            circuitBreaker.recordFailure();
+            retryOrFail(donation, e.getMessage());
+            return;
+        }
+        circuitBreaker.recordSuccess();
+
+        try {
+            if (result.isApproved()) {
+                donationService.completePayment(donation.getId());
+            } else {
+                donationService.failPayment(donation.getId(), truncate(result.getMessage()));
+            }
+        } catch (Exception e) {
+            // Шлюз помнит результат по transactionId, поэтому повтор после аренды не спишет деньги дважды
+            log.error("Не удалось записать результат платежа по пожертвованию {}: {}", donation.getId(), e.getMessage());
+        }
+    }
+
+    private void retryOrFail(Donation donation, String error) {
+        int attempts = donation.getPaymentAttempts() + 1;
+        try {
+            if (attempts >= maxAttempts) {
+                log.error("Платеж по пожертвованию {} не проведен за {} попыток: {}", donation.getId(), attempts, error);
+                donationService.failPayment(donation.getId(), truncate("Платежный шлюз недоступен: " + error));
+                return;
+            }
+            long delay = Math.min(retryBaseDelayMs << Math.min(attempts - 1, 20), MAX_RETRY_DELAY_MS);
+            log.warn("Ошибка платежного шлюза для пожертвования {} (попытка {}), повтор через {} мс: {}",
+                    donation.getId(), attempts, delay, error);
+            transactionTemplate.executeWithoutResult(status -> donationRepository.schedulePaymentRetry(
+                    donation.getId(), LocalDateTime.now().plusNanos(delay * 1_000_000), truncate(error)));
+        } catch (Exception e) {
+            log.error("Не удалось отложить платеж по пожертвованию {}: {}", donation.getId(), e.getMessage());
+        }
+    }
+
+    private String truncate(String message) {
+        if (message == null) {
+            return null;
+        }
+        return message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message;
+    }
+}
@@ -0,0 +1,209 @@
+package org.example.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.dto.PaymentResult;
+import org.example.dto.RecurringChargeItem;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Параллельное проведение списаний регулярных платежей через платежный шлюз. Каждое списание
+ * ждет шлюз в своем потоке: на Java 21+ это виртуальный поток, на более старой JVM - поток из
+ * пула размером max-in-flight. Семафор ограничивает число одновременных запросов к шлюзу,
+ * ведро токенов - число новых запросов в секунду. Результаты записываются пачками по
+ * write-batch-size; списания с временной ошибкой шлюза остаются в PENDING и после retryAt
+ * переходят к PaymentProcessingService с его повторами. Размыкатель шлюза общий с
+ * PaymentProcessingService: пока он разомкнут, списания не отправляются и тоже остаются в PENDING.
+ */
+@Slf4j
+@Service
+public class RecurringChargeService {
+
+    private static final long RESULT_POLL_MS = 100;
+    private static final String BREAKER_OPEN = "Размыкатель платежного шлюза разомкнут";
+
+    private static final class Outcome {
+        final Long donationId;
+        final PaymentResult result;
+        final String error;
+
+        Outcome(Long donationId, PaymentResult result, String error) {
+            this.donationId = donationId;
+            this.result = result;
+            this.error = error;
+        }
+    }
+
+    private final PaymentGateway paymentGateway;
+    private final DonationService donationService;
+    private final CircuitBreaker circuitBreaker;
+    private final ExecutorService executor;
+    private final Semaphore inFlight;
+    private final TokenBucket rateLimiter;
+    private final int writeBatchSize;
+
+    public RecurringChargeService(
+            PaymentGateway paymentGateway,
+            DonationService donationService,
+            CircuitBreaker circuitBreaker,
+            @Value("${app.recurring.charges.max-in-flight:200}") int maxInFlight,
+            @Value("${app.recurring.charges.rate-per-second:500}") int ratePerSecond,
+            @Value("${app.recurring.charges.write-batch-size:50}") int writeBatchSize) {
+        this.paymentGateway = paymentGateway;
+        this.donationService = donationService;
+        this.circuitBreaker = circuitBreaker;
+        this.executor = newExecutor(maxInFlight);
+        this.inFlight = new Semaphore(maxInFlight);
+        this.rateLimiter = new TokenBucket(ratePerSecond, ratePerSecond);
+        this.writeBatchSize = writeBatchSize;
+    }
+
+    // Проводит списания порции и возвращается, когда записаны результаты всех запросов
+    public void charge(List<RecurringChargeItem> charges) {
+        if (charges.isEmpty()) {
+            return;
+        }
+        long startedAt = System.currentTimeMillis();
+        BlockingQueue<Outcome> outcomes = new LinkedBlockingQueue<>();
+        List<Outcome> batch = new ArrayList<>();
+        int[] totals = new int[3];
+        int received = 0;
+        int rejected = 0;
+
+        for (RecurringChargeItem charge : charges) {
+            // Размыкатель проверяется после ожидания места среди запросов к шлюзу, когда уже известны
+            // исходы предыдущих вызовов; отклоненное списание не тратит токен
+            inFlight.acquireUninterruptibly();
+            if (!circuitBreaker.tryAcquire()) {
+                inFlight.release();
+                rejected++;
+                outcomes.add(new Outcome(charge.getDonationId(), null, BREAKER_OPEN));
+            } else {
+                rateLimiter.acquire();
+                try {
+                    executor.execute(() -> {
+                        try {
+                            outcomes.add(chargeOne(charge));
+                        } finally {
+                            inFlight.release();
+                        }
+                    });
+                } catch (RuntimeException e) {
+                    inFlight.release();
+                    circuitBreaker.release();
+                    outcomes.add(new Outcome(charge.getDonationId(), null, e.getMessage()));
+                }
+            }
+            received += outcomes.drainTo(batch);
+            if (batch.size() >= writeBatchSize) {
+                write(batch, totals);
+            }
+        }
+
+        // Хвост порции: результаты пишутся по мере прихода, неполная пачка - когда очередь затихла
+        while (received < charges.size()) {
+            Outcome outcome;
+            try {
+                outcome = outcomes.poll(RESULT_POLL_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (outcome != null) {
+                batch.add(outcome);
+                received += 1 + outcomes.drainTo(batch);
+            }
+            if (batch.size() >= writeBatchSize || (outcome == null && !batch.isEmpty())) {
+                write(batch, totals);
+            }
+        }
+        write(batch, totals);
+
+        if (rejected > 0) {
+            log.warn("Размыкатель платежного шлюза разомкнут: {} списаний оставлены в PENDING", rejected);
+        }
+        log.info("Списания регулярных платежей: проведено {}, отклонено {}, отложено {} за {} мс",
+                totals[0], totals[1], totals[2], System.currentTimeMillis() - startedAt);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        // Незаписанные списания остаются в PENDING и будут проведены PaymentProcessingService
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    private Outcome chargeOne(RecurringChargeItem charge) {
+        PaymentResult result;
+        try {
+            result = paymentGateway.charge(charge.getTransactionId(), charge.getAmount(), charge.getPaymentMethod());
+        } catch (RuntimeException e) {
+            circuitBreaker.recordFailure();
+            return new Outcome(charge.getDonationId(), null, e.getMessage() != null ? e.getMessage() : e.toString());
+        }
+        circuitBreaker.recordSuccess();
+        return new Outcome(charge.getDonationId(), result, null);
+    }
+
+    private void write(List<Outcome> batch, int[] totals) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<Long> approved = new ArrayList<>();
+        Map<Long, String> declined = new LinkedHashMap<>();
+        for (Outcome outcome : batch) {
+            if (outcome.result == null) {
+                totals[2]++;
+            } else if (outcome.result.isApproved()) {
+                approved.add(outcome.donationId);
+            } else {
+                declined.put(outcome.donationId, outcome.result.getMessage());
+            }
+        }
+        try {
+            if (!approved.isEmpty()) {
+                donationService.completePayments(approved);
+            }
+            if (!declined.isEmpty()) {
+                donationService.failPayments(declined);
+            }
+            totals[0] += approved.size();
+            totals[1] += declined.size();
+        } catch (Exception e) {
+            // Шлюз помнит результат по transactionId, поэтому повтор через PaymentProcessingService не спишет дважды
+            log.error("Не удалось записать результаты {} списаний регулярных платежей: {}", batch.size(), e.getMessage());
+            totals[2] += approved.size() + declined.size();
+        }
+        batch.clear();
+    }
+
+    private static ExecutorService newExecutor(int maxInFlight) {
+        try {
+            ExecutorService executor = (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            log.info("Списания регулярных платежей выполняются в виртуальных потоках");
+            return executor;
+        } catch (ReflectiveOperationException e) {
+            log.info("Виртуальные потоки недоступны, списания выполняются в пуле из {} потоков", maxInFlight);
+            AtomicInteger threadNumber = new AtomicInteger();
+            return Executors.newFixedThreadPool(maxInFlight, runnable -> {
+                Thread thread = new Thread(runnable, "recurring-charge-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package org.example.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.dto.RecurringForecast;
+import org.example.dto.RecurringForecastPoint;
+import org.example.dto.RecurringForecastRow;
+import org.example.dto.RecurringForecastSeries;
+import org.example.dto.RecurringSchedule;
+import org.example.event.RecurringScheduleChangedEvent;
+import org.example.repository.FundraisingRepository;
+import org.example.repository.RecurringPaymentRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Прогноз поступлений по регулярным платежам из снимка активных подписок в памяти
+ * (SubscriptionSnapshot). Снимок строится при старте, обновляется событиями создания, отмены
+ * и списания подписок, а изменения с других узлов подтягиваются сверкой по updated_at. Подписки
+ * удаленных кампаний сверка не видит, поэтому снимок изредка перестраивается целиком; до этого
+ * их отсекает фильтр по активным кампаниям, который запрашивается на каждый прогноз.
+ */
+@Slf4j
+@Service
+public class RecurringForecastService {
+
+    private static final int LOAD_PAGE_SIZE = 5000;
+    private static final int MAX_MONTHS = 36;
+    // Запас на расхождение часов узлов и на транзакции, закоммиченные после начала предыдущей сверки
+    private static final long SYNC_OVERLAP_MS = 5000;
+
+    private final RecurringPaymentRepository recurringPaymentRepository;
+    private final FundraisingRepository fundraisingRepository;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private SubscriptionSnapshot snapshot = new SubscriptionSnapshot();
+    private volatile LocalDateTime lastSync;
+
+    public RecurringForecastService(RecurringPaymentRepository recurringPaymentRepository,
+                                    FundraisingRepository fundraisingRepository) {
+        this.recurringPaymentRepository = recurringPaymentRepository;
+        this.fundraisingRepository = fundraisingRepository;
+    }
+
+    // Новый снимок собирается без блокировки и подменяет старый целиком
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${app.recurring.forecast.rebuild-interval-ms:3600000}",
+            fixedDelayString = "${app.recurring.forecast.rebuild-interval-ms:3600000}")
+    public void rebuild() {
+        LocalDateTime startedAt = LocalDateTime.now();
+        SubscriptionSnapshot rebuilt = new SubscriptionSnapshot();
+        long afterId = 0;
+        List<RecurringForecastRow> page;
+        do {
+            page = recurringPaymentRepository.findActiveForecastRowsAfter(afterId, PageRequest.of(0, LOAD_PAGE_SIZE));
+            page.forEach(row -> apply(rebuilt, row));
+            if (!page.isEmpty()) {
+                afterId = page.get(page.size() - 1).getId();
+            }
+        } while (page.size() == LOAD_PAGE_SIZE);
+
+        lock.writeLock().lock();
+        try {
+            snapshot = rebuilt;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        lastSync = startedAt;
+        log.info("Снимок подписок для прогноза поступлений построен: {} активных подписок", rebuilt.size());
+    }
+
+    @Scheduled(initialDelayString = "${app.recurring.forecast.sync-interval-ms:60000}",
+            fixedDelayString = "${app.recurring.forecast.sync-interval-ms:60000}")
+    public void sync() {
+        if (lastSync == null) {
+            return;
+        }
+        LocalDateTime startedAt = LocalDateTime.now();
+        List<RecurringForecastRow> changed = recurringPaymentRepository.findForecastRowsUpdatedSince(
+                lastSync.minusNanos(SYNC_OVERLAP_MS * 1_000_000));
+        lock.writeLock().lock();
+        try {
+            changed.forEach(row -> apply(snapshot, row));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        lastSync = startedAt;
+        log.debug("Сверка снимка подписок: изменено {}", changed.size());
+    }
+
+    // Списание и отмена меняют только срок и активность; строку из базы читают лишь новые подписки
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onScheduleChanged(RecurringScheduleChangedEvent event) {
+        List<Long> unknown = new ArrayList<>();
+        lock.writeLock().lock();
+        try {
+            for (RecurringSchedule schedule : event.getSchedules()) {
+                if (!schedule.isActive() || schedule.getNextPaymentDate() == null) {
+                    snapshot.remove(schedule.getId());
+                } else if (!snapshot.move(schedule.getId(), monthIndex(schedule.getNextPaymentDate()))) {
+                    unknown.add(schedule.getId());
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (unknown.isEmpty()) {
+            return;
+        }
+        List<RecurringForecastRow> rows = recurringPaymentRepository.findForecastRowsByIds(unknown);
+        lock.writeLock().lock();
+        try {
+            rows.forEach(row -> apply(snapshot, row));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public RecurringForecast getCharityForecast(Long charityId, int months) {
+        List<Long> fundraisingIds = fundraisingRepository.findActiveIdsByCharityId(charityId);
+        return forecast("charity", charityId, fundraisingIds, months, true);
+    }
+
+    public RecurringForecast getFundraisingForecast(Long fundraisingId, int months) {
+        List<Long> fundraisingIds = fundraisingRepository.existsByIdAndActiveTrue(fundraisingId)
+                ? List.of(fundraisingId) : List.of();
+        return forecast("fundraising", fundraisingId, fundraisingIds, months, false);
+    }
+
+    private RecurringForecast forecast(String scope, Long scopeId, List<Long> fundraisingIds, int months,
+                                       boolean withSeries) {
+        if (months < 1 || months > MAX_MONTHS) {
+            throw new RuntimeException(String.format("Горизонт прогноза должен быть от 1 до %d месяцев", MAX_MONTHS));
+        }
+        long[] sortedIds = fundraisingIds.stream().mapToLong(Long::longValue).sorted().toArray();
+        YearMonth fromMonth = YearMonth.now();
+
+        SubscriptionSnapshot.Projection[] projections;
+        lock.readLock().lock();
+        try {
+            projections = snapshot.project(sortedIds, monthIndex(fromMonth), months);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        SubscriptionSnapshot.Projection total = new SubscriptionSnapshot.Projection(months);
+        List<RecurringForecastSeries> series = new ArrayList<>();
+        for (int i = 0; i < sortedIds.length; i++) {
+            SubscriptionSnapshot.Projection projection = projections[i];
+            if (projection == null) {
+                continue;
+            }
+            total.subscriptions += projection.subscriptions;
+            for (int month = 0; month < months; month++) {
+                total.amounts[month] += projection.amounts[month];
+                total.payments[month] += projection.payments[month];
+            }
+            if (withSeries) {
+                series.add(new RecurringForecastSeries(sortedIds[i], projection.subscriptions,
+                        sum(projection), points(projection, fromMonth)));
+            }
+        }
+        return new RecurringForecast(scope, scopeId, months, total.subscriptions, sum(total),
+                points(total, fromMonth), withSeries ? series : null);
+    }
+
+    private List<RecurringForecastPoint> points(SubscriptionSnapshot.Projection projection, YearMonth fromMonth) {
+        List<RecurringForecastPoint> points = new ArrayList<>(projection.amounts.length);
+        for (int month = 0; month < projection.amounts.length; month++) {
+            LocalDate start = fromMonth.plusMonths(month).atDay(1);
+            points.add(new RecurringForecastPoint(start, toAmount(projection.amounts[month]), projection.payments[month]));
+        }
+        return points;
+    }
+
+    private BigDecimal sum(SubscriptionSnapshot.Projection projection) {
+        long kopecks = 0;
+        for (long amount : projection.amounts) {
+            kopecks += amount;
+        }
+        return toAmount(kopecks);
+    }
+
+    private void apply(SubscriptionSnapshot target, RecurringForecastRow row) {
+        if (!row.isActive() || row.getNextPaymentDate() == null) {
+            target.remove(row.getId());
+            return;
+        }
+        target.put(row.getId(), row.getFundraisingId(), toKopecks(row.getAmount()),
+                monthIndex(row.getNextPaymentDate()));
+    }
+
+    private static int monthIndex(LocalDateTime date) {
+        return SubscriptionSnapshot.monthIndex(date.getYear(), date.getMonthValue());
+    }
+
+    private static int monthIndex(YearMonth month) {
+        return SubscriptionSnapshot.monthIndex(month.getYear(), month.getMonthValue());
+    }
+
+    private static long toKopecks(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    private static BigDecimal toAmount(long kopecks) {
+        return BigDecimal.valueOf(kopecks, 2);
+    }
+}
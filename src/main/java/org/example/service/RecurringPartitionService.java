@@ -0,0 +1,185 @@
+package org.example.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.model.RecurringBillingNode;
+import org.example.model.RecurringPartitionLease;
+import org.example.repository.RecurringBillingNodeRepository;
+import org.example.repository.RecurringPartitionLeaseRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.net.InetAddress;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Распределение регулярных платежей между экземплярами приложения. Подписки делятся на
+ * разделы по остатку от деления ID, каждый узел арендует свою долю разделов (поровну между
+ * живыми узлами) и продлевает аренду пульсом. Разделы упавшего узла освобождаются по истечении
+ * аренды и достаются остальным, а при появлении нового узла лишние разделы отдаются ему.
+ */
+@Slf4j
+@Service
+public class RecurringPartitionService {
+
+    private final RecurringPartitionLeaseRepository leaseRepository;
+    private final RecurringBillingNodeRepository nodeRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final String nodeId;
+    private final int partitions;
+    private final long leaseMs;
+
+    private volatile Set<Integer> ownedPartitions = Set.of();
+    private volatile LocalDateTime ownedUntil = LocalDateTime.MIN;
+    private volatile boolean partitionsCreated;
+
+    public RecurringPartitionService(
+            RecurringPartitionLeaseRepository leaseRepository,
+            RecurringBillingNodeRepository nodeRepository,
+            TransactionTemplate transactionTemplate,
+            @Value("${app.recurring.node-id:}") String nodeId,
+            @Value("${app.recurring.partitions:16}") int partitions,
+            @Value("${app.recurring.lease-ms:30000}") long leaseMs) {
+        this.leaseRepository = leaseRepository;
+        this.nodeRepository = nodeRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.nodeId = nodeId.isBlank() ? defaultNodeId() : nodeId;
+        this.partitions = partitions;
+        this.leaseMs = leaseMs;
+    }
+
+    // Разделы, которые узел вправе списывать сейчас. После истечения аренды (например, база
+    // была недоступна для пульса) узел прекращает списание, даже если не успел узнать о потере
+    public Set<Integer> getOwnedPartitions() {
+        return LocalDateTime.now().isBefore(ownedUntil) ? ownedPartitions : Set.of();
+    }
+
+    public int getPartitionCount() {
+        return partitions;
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("nodeId", nodeId);
+        status.put("partitions", partitions);
+        status.put("ownedPartitions", getOwnedPartitions().stream().sorted().collect(Collectors.toList()));
+        status.put("leaseUntil", ownedUntil);
+        status.put("liveNodes", nodeRepository.countByHeartbeatAtAfter(LocalDateTime.now().minusNanos(leaseMs * 1_000_000)));
+        return status;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${app.recurring.heartbeat-interval-ms:10000}",
+            fixedDelayString = "${app.recurring.heartbeat-interval-ms:10000}")
+    public void heartbeat() {
+        try {
+            if (!partitionsCreated) {
+                createPartitions();
+            }
+            LocalDateTime now = LocalDateTime.now();
+            LocalDateTime leaseUntil = now.plusNanos(leaseMs * 1_000_000);
+            List<Integer> owned = transactionTemplate.execute(status -> rebalance(now, leaseUntil));
+            if (owned != null) {
+                ownedPartitions = Set.copyOf(owned);
+                ownedUntil = leaseUntil;
+            }
+        } catch (Exception e) {
+            log.error("Ошибка продления аренды разделов регулярных платежей: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Разделы освобождаются сразу, чтобы остальные узлы не ждали истечения аренды
+        ownedPartitions = Set.of();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                leaseRepository.releaseAll(nodeId, LocalDateTime.now());
+                nodeRepository.deleteById(nodeId);
+            });
+            log.info("Узел {} освободил разделы регулярных платежей", nodeId);
+        } catch (Exception e) {
+            log.warn("Не удалось освободить разделы регулярных платежей: {}", e.getMessage());
+        }
+    }
+
+    private List<Integer> rebalance(LocalDateTime now, LocalDateTime leaseUntil) {
+        if (nodeRepository.heartbeat(nodeId, now) == 0) {
+            RecurringBillingNode node = new RecurringBillingNode();
+            node.setNodeId(nodeId);
+            node.setHeartbeatAt(now);
+            node.setStartedAt(now);
+            nodeRepository.save(node);
+            log.info("Узел {} подключился к списанию регулярных платежей", nodeId);
+        }
+        LocalDateTime expiredBefore = now.minusNanos(leaseMs * 1_000_000);
+        nodeRepository.deleteStale(expiredBefore);
+        long liveNodes = Math.max(1, nodeRepository.countByHeartbeatAtAfter(expiredBefore));
+        int target = (int) ((partitions + liveNodes - 1) / liveNodes);
+
+        leaseRepository.renew(nodeId, now, leaseUntil);
+        List<Integer> owned = new ArrayList<>(leaseRepository.findOwned(nodeId, now, partitions));
+
+        if (owned.size() > target) {
+            // Лишние разделы отдаются узлам, которые подключились позже
+            List<Integer> extra = new ArrayList<>(owned.subList(target, owned.size()));
+            leaseRepository.release(extra, nodeId, now);
+            owned.removeAll(extra);
+            log.info("Узел {} освободил разделы {} (живых узлов: {})", nodeId, extra, liveNodes);
+        } else if (owned.size() < target) {
+            for (RecurringPartitionLease lease : leaseRepository.findClaimable(now, partitions)) {
+                if (owned.size() >= target) {
+                    break;
+                }
+                if (leaseRepository.claim(lease.getPartitionNo(), nodeId, now, leaseUntil) > 0) {
+                    owned.add(lease.getPartitionNo());
+                    if (lease.getOwnerNode() != null && !lease.getOwnerNode().equals(nodeId)) {
+                        log.warn("Узел {} забрал раздел {} у узла {}: аренда истекла",
+                                nodeId, lease.getPartitionNo(), lease.getOwnerNode());
+                    }
+                }
+            }
+        }
+        return owned;
+    }
+
+    // Строки разделов создаются один раз; одновременная вставка с другого узла не мешает
+    private void createPartitions() {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Set<Integer> existing = new HashSet<>(leaseRepository.findAllPartitionNos());
+                List<RecurringPartitionLease> missing = IntStream.range(0, partitions)
+                        .filter(partitionNo -> !existing.contains(partitionNo))
+                        .mapToObj(RecurringPartitionLease::new)
+                        .collect(Collectors.toList());
+                leaseRepository.saveAll(missing);
+            });
+            partitionsCreated = true;
+        } catch (Exception e) {
+            log.warn("Разделы регулярных платежей создаются другим узлом: {}", e.getMessage());
+        }
+    }
+
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "node";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
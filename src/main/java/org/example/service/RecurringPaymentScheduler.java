@@ -0,0 +1,147 @@
+package org.example.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.dto.RecurringSchedule;
+import org.example.event.RecurringScheduleChangedEvent;
+import org.example.repository.RecurringPaymentRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Списание регулярных платежей по сроку без опроса таблицы. Сроки всех активных подписок
+ * держатся в иерархическом колесе таймеров (TimingWheel): раз в tick-ms колесо отдает подписки,
+ * чей срок наступил, и они списываются только по своим ID. Колесо обновляется событиями
+ * создания, отмены и списания подписок, а изменения с других узлов подтягиваются коротким
+ * запросом по updated_at. Общий проход RecurringPaymentService остается страховкой.
+ */
+@Slf4j
+@Service
+public class RecurringPaymentScheduler {
+
+    private static final int LOAD_PAGE_SIZE = 5000;
+    // Запас на расхождение часов узлов и на транзакции, закоммиченные после начала предыдущей сверки
+    private static final long SYNC_OVERLAP_MS = 5000;
+
+    private final RecurringPaymentRepository recurringPaymentRepository;
+    private final RecurringPaymentService recurringPaymentService;
+    private final RecurringPartitionService partitionService;
+    private final TimingWheel wheel;
+    private final int chunkSize;
+    private final long retryDelayMs;
+
+    private volatile boolean loaded;
+    private volatile LocalDateTime lastSync;
+
+    public RecurringPaymentScheduler(
+            RecurringPaymentRepository recurringPaymentRepository,
+            RecurringPaymentService recurringPaymentService,
+            RecurringPartitionService partitionService,
+            @Value("${app.recurring.wheel.tick-ms:1000}") long tickMs,
+            @Value("${app.recurring.wheel.size:64}") int wheelSize,
+            @Value("${app.recurring.wheel.levels:5}") int levels,
+            @Value("${app.recurring.wheel.retry-delay-ms:30000}") long retryDelayMs,
+            @Value("${app.recurring.chunk-size:500}") int chunkSize) {
+        this.recurringPaymentRepository = recurringPaymentRepository;
+        this.recurringPaymentService = recurringPaymentService;
+        this.partitionService = partitionService;
+        this.wheel = new TimingWheel(tickMs, wheelSize, levels, System.currentTimeMillis());
+        this.retryDelayMs = retryDelayMs;
+        this.chunkSize = chunkSize;
+    }
+
+    // Колесо заполняется один раз при старте; дальше его меняют только события и сверка
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        LocalDateTime startedAt = LocalDateTime.now();
+        long afterId = 0;
+        List<RecurringSchedule> page;
+        do {
+            page = recurringPaymentRepository.findActiveSchedulesAfter(afterId, PageRequest.of(0, LOAD_PAGE_SIZE));
+            page.forEach(schedule -> apply(schedule, false));
+            if (!page.isEmpty()) {
+                afterId = page.get(page.size() - 1).getId();
+            }
+        } while (page.size() == LOAD_PAGE_SIZE);
+        lastSync = startedAt;
+        loaded = true;
+        log.info("В колесо таймеров загружено регулярных платежей: {}", wheel.size());
+    }
+
+    @Scheduled(fixedDelayString = "${app.recurring.wheel.tick-ms:1000}")
+    public void tick() {
+        if (!loaded) {
+            return;
+        }
+        List<Long> due = wheel.advance(System.currentTimeMillis());
+        if (due.isEmpty()) {
+            return;
+        }
+        // Подписки чужих разделов списывает их владелец; здесь их срок только откладывается до сверки
+        Set<Integer> partitions = partitionService.getOwnedPartitions();
+        int partitionCount = partitionService.getPartitionCount();
+        Map<Boolean, List<Long>> byOwner = due.stream()
+                .collect(Collectors.partitioningBy(id -> partitions.contains((int) (id % partitionCount))));
+        byOwner.get(false).forEach(this::retryLater);
+
+        List<Long> owned = byOwner.get(true);
+        for (int from = 0; from < owned.size(); from += chunkSize) {
+            List<Long> chunk = new ArrayList<>(owned.subList(from, Math.min(from + chunkSize, owned.size())));
+            try {
+                recurringPaymentService.processDuePayments(chunk);
+            } catch (Exception e) {
+                log.error("Ошибка списания регулярных платежей по колесу таймеров: {}", e.getMessage());
+                chunk.forEach(this::retryLater);
+            }
+        }
+    }
+
+    @Scheduled(initialDelayString = "${app.recurring.wheel.sync-interval-ms:30000}",
+            fixedDelayString = "${app.recurring.wheel.sync-interval-ms:30000}")
+    public void sync() {
+        if (!loaded) {
+            return;
+        }
+        LocalDateTime startedAt = LocalDateTime.now();
+        List<RecurringSchedule> changed = recurringPaymentRepository.findSchedulesUpdatedSince(
+                lastSync.minusNanos(SYNC_OVERLAP_MS * 1_000_000));
+        changed.forEach(schedule -> apply(schedule, false));
+        lastSync = startedAt;
+        log.debug("Сверка колеса таймеров: изменено подписок {}, в колесе {}", changed.size(), wheel.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onScheduleChanged(RecurringScheduleChangedEvent event) {
+        // Срок, который все еще наступил после попытки списания, повторяется позже, а не на следующем тике
+        event.getSchedules().forEach(schedule -> apply(schedule, true));
+    }
+
+    private void apply(RecurringSchedule schedule, boolean afterAttempt) {
+        if (!schedule.isActive() || schedule.getNextPaymentDate() == null) {
+            wheel.cancel(schedule.getId());
+            return;
+        }
+        long deadline = schedule.getNextPaymentDate().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        long now = System.currentTimeMillis();
+        if (afterAttempt && deadline <= now) {
+            deadline = now + retryDelayMs;
+        }
+        wheel.schedule(schedule.getId(), deadline);
+    }
+
+    private void retryLater(Long id) {
+        wheel.schedule(id, System.currentTimeMillis() + retryDelayMs);
+    }
+}
@@ -1,29 +1,69 @@
 package org.example.service;
 
-import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.dto.RecurringChargeItem;
+import org.example.dto.RecurringChargeTotal;
+import org.example.dto.RecurringSchedule;
+import org.example.event.FundraisingChangedEvent;
+import org.example.event.RecurringScheduleChangedEvent;
 import org.example.model.RecurringPayment;
 import org.example.model.User;
 import org.example.model.Fundraising;
+import org.example.repository.DonationRepository;
 import org.example.repository.RecurringPaymentRepository;
 import org.example.repository.FundraisingRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.context.annotation.Lazy;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 public class RecurringPaymentService {
     private final RecurringPaymentRepository recurringPaymentRepository;
     private final FundraisingRepository fundraisingRepository;
+    private final DonationRepository donationRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final RecurringPartitionService partitionService;
+    private final RecurringChargeService recurringChargeService;
+    private final int chunkSize;
+    private final long chargeLeaseMs;
 
     public RecurringPaymentService(
             RecurringPaymentRepository recurringPaymentRepository,
-            @Lazy FundraisingRepository fundraisingRepository) {
+            @Lazy FundraisingRepository fundraisingRepository,
+            DonationRepository donationRepository,
+            ApplicationEventPublisher eventPublisher,
+            TransactionTemplate transactionTemplate,
+            RecurringPartitionService partitionService,
+            RecurringChargeService recurringChargeService,
+            @Value("${app.recurring.chunk-size:500}") int chunkSize,
+            @Value("${app.recurring.charges.lease-ms:600000}") long chargeLeaseMs) {
         this.recurringPaymentRepository = recurringPaymentRepository;
         this.fundraisingRepository = fundraisingRepository;
+        this.donationRepository = donationRepository;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = transactionTemplate;
+        this.partitionService = partitionService;
+        this.recurringChargeService = recurringChargeService;
+        this.chunkSize = chunkSize;
+        this.chargeLeaseMs = chargeLeaseMs;
     }
 
     @Transactional
@@ -38,7 +78,10 @@ public class RecurringPaymentService {
         payment.setPaymentDay(paymentDay);
         payment.setNextPaymentDate(calculateNextPaymentDate(paymentDay));
 
-        return recurringPaymentRepository.save(payment);
+        payment = recurringPaymentRepository.save(payment);
+        publishFundraisingChanged(fundraising);
+        publishScheduleChanged(payment);
+        return payment;
     }
 
     @Transactional
@@ -52,6 +95,8 @@ public class RecurringPaymentService {
 
         payment.setActive(false);
         recurringPaymentRepository.save(payment);
+        publishFundraisingChanged(payment.getFundraising());
+        publishScheduleChanged(payment);
     }
 
     @Transactional(readOnly = true)
@@ -59,38 +104,134 @@ public class RecurringPaymentService {
         return recurringPaymentRepository.findByUserIdAndIsActiveTrue(userId);
     }
 
-    @Transactional
+    // Общий проход по наступившим платежам - страховка для колеса таймеров (RecurringPaymentScheduler):
+    // подхватывает то, что колесо пропустило. Порции по chunk-size строк, каждая - своя транзакция.
+    // Захваченные строки заблокированы до коммита, а следующая дата списания сдвигается в той же
+    // транзакции, поэтому параллельные экземпляры приложения разбирают очередь, не списывая дважды.
+    // Платежи порции проводятся через шлюз уже после коммита, вне блокировок подписок
+    @Scheduled(initialDelayString = "${app.recurring.catch-up-interval-ms:900000}",
+            fixedDelayString = "${app.recurring.catch-up-interval-ms:900000}")
     public void processRecurringPayments() {
-        LocalDateTime now = LocalDateTime.now();
-        List<RecurringPayment> paymentsToProcess = recurringPaymentRepository
-                .findByIsActiveTrueAndNextPaymentDateBefore(now);
+        // Точность, которую сохраняет база: по этой метке находятся пожертвования, вставленные порцией
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+        int processed = 0;
+        Integer chunk;
+        do {
+            // Разделы перечитываются перед каждой порцией: узел, потерявший аренду, сразу останавливается
+            Set<Integer> partitions = partitionService.getOwnedPartitions();
+            if (partitions.isEmpty()) {
+                break;
+            }
+            List<RecurringChargeItem> charges = new ArrayList<>();
+            chunk = transactionTemplate.execute(status -> processChunk(now, partitions, charges));
+            processed += chunk != null ? chunk : 0;
+            recurringChargeService.charge(charges);
+        } while (chunk != null && chunk == chunkSize);
+
+        if (processed > 0) {
+            log.info("Общим проходом обработано регулярных платежей: {}", processed);
+        }
+    }
 
-        for (RecurringPayment payment : paymentsToProcess) {
-            processPayment(payment);
-            updateNextPaymentDate(payment);
+    // Списание подписок, срок которых отсчитало колесо таймеров. Новые сроки всех переданных
+    // подписок, и списанных, и пропущенных, возвращаются колесу событием после коммита
+    public void processDuePayments(List<Long> ids) {
+        Set<Integer> partitions = partitionService.getOwnedPartitions();
+        if (partitions.isEmpty()) {
+            // Аренда потеряна: сроки возвращаются колесу без списания
+            eventPublisher.publishEvent(new RecurringScheduleChangedEvent(recurringPaymentRepository.findSchedulesByIds(ids)));
+            return;
         }
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+        List<RecurringChargeItem> charges = new ArrayList<>();
+        int charged = transactionTemplate.execute(status -> {
+            List<RecurringPayment> payments = recurringPaymentRepository.claimDueByIds(
+                    ids, now, partitionService.getPartitionCount(), partitions);
+            int processed = payments.isEmpty() ? 0 : billChunk(payments, now, charges);
+            eventPublisher.publishEvent(new RecurringScheduleChangedEvent(recurringPaymentRepository.findSchedulesByIds(ids)));
+            return processed;
+        });
+        recurringChargeService.charge(charges);
+        log.debug("Колесо таймеров: обработано регулярных платежей {} из {}", charged, ids.size());
     }
 
-    private void processPayment(RecurringPayment payment) {
-        Fundraising fundraising = payment.getFundraising();
-        fundraising.setCurrentAmount(fundraising.getCurrentAmount().add(payment.getAmount()));
-        fundraisingRepository.save(fundraising);
-        // TODO: Add actual payment processing logic here
+    private int processChunk(LocalDateTime now, Set<Integer> partitions, List<RecurringChargeItem> charges) {
+        List<RecurringPayment> payments = recurringPaymentRepository.claimDue(
+                now, partitionService.getPartitionCount(), partitions, PageRequest.of(0, chunkSize));
+        if (payments.isEmpty()) {
+            return 0;
+        }
+        int processed = billChunk(payments, now, charges);
+        eventPublisher.publishEvent(new RecurringScheduleChangedEvent(recurringPaymentRepository.findSchedulesByIds(
+                payments.stream().map(RecurringPayment::getId).collect(Collectors.toList()))));
+        return processed;
     }
 
-    private void updateNextPaymentDate(RecurringPayment payment) {
-        payment.setNextPaymentDate(calculateNextPaymentDate(payment.getPaymentDay()));
-        recurringPaymentRepository.save(payment);
+    // Порция обходится без построчной работы: пожертвования и сдвиг дат - по одному запросу на порцию,
+    // резерв - по одному UPDATE на кампанию. Пожертвования создаются в PENDING и попадают в charges;
+    // подтверждение, события диспетчера и перенос резерва в current_amount делает RecurringChargeService
+    private int billChunk(List<RecurringPayment> payments, LocalDateTime now, List<RecurringChargeItem> charges) {
+        List<Long> ids = payments.stream().map(RecurringPayment::getId).collect(Collectors.toList());
+
+        // Кампания завершена или отменена: подписки на нее больше не списываются
+        int deactivated = recurringPaymentRepository.deactivateForInactiveFundraisings(ids, now);
+        if (deactivated > 0) {
+            log.info("Отключено регулярных платежей неактивных кампаний: {}", deactivated);
+        }
+
+        int charged = donationRepository.insertRecurringCharges(ids, now, now.plusNanos(chargeLeaseMs * 1_000_000));
+        if (charged > 0) {
+            // Итоги идут по возрастанию ID кампании, чтобы экземпляры не взаимоблокировались на строках кампаний
+            for (RecurringChargeTotal total : donationRepository.sumRecurringCharges(ids, now)) {
+                // Общий фонд резерв не ведет: сумма учитывается при подтверждении платежа
+                if (total.getTargetAmount().compareTo(DonationService.GENERAL_FUND_TARGET) < 0) {
+                    fundraisingRepository.addReservedAmount(total.getFundraisingId(), total.getAmount());
+                }
+                log.debug("Кампания {}: выставлено {} регулярных платежей на сумму {}",
+                        total.getFundraisingId(), total.getCount(), total.getAmount());
+            }
+            charges.addAll(donationRepository.findRecurringCharges(ids, now));
+        }
+
+        // Подписки одной порции обычно списываются в один день, поэтому и новых дат немного
+        Map<LocalDateTime, List<Long>> byNextDate = payments.stream()
+                .collect(Collectors.groupingBy(payment -> nextPaymentDate(payment, now), TreeMap::new,
+                        Collectors.mapping(RecurringPayment::getId, Collectors.toList())));
+        byNextDate.forEach((nextDate, group) -> recurringPaymentRepository.advanceNextPaymentDate(group, nextDate, now));
+        return payments.size();
+    }
+
+    private void publishFundraisingChanged(Fundraising fundraising) {
+        eventPublisher.publishEvent(new FundraisingChangedEvent(
+                fundraising.getId(), fundraising.getCharity().getId()));
+    }
+
+    private void publishScheduleChanged(RecurringPayment payment) {
+        eventPublisher.publishEvent(new RecurringScheduleChangedEvent(List.of(
+                new RecurringSchedule(payment.getId(), payment.getNextPaymentDate(), payment.isActive()))));
+    }
+
+    // Ближайший день списания после now; день, которого нет в месяце, переносится на последний день месяца
+    private LocalDateTime nextPaymentDate(RecurringPayment payment, LocalDateTime now) {
+        LocalDateTime next = payment.getNextPaymentDate();
+        int paymentDay = payment.getPaymentDay() != null ? payment.getPaymentDay() : next.getDayOfMonth();
+        while (!next.isAfter(now)) {
+            YearMonth month = YearMonth.from(next).plusMonths(1);
+            next = month.atDay(Math.min(paymentDay, month.lengthOfMonth())).atTime(next.toLocalTime());
+        }
+        return next;
     }
 
     private LocalDateTime calculateNextPaymentDate(Integer paymentDay) {
         LocalDateTime now = LocalDateTime.now();
-        LocalDateTime nextPayment = now.withDayOfMonth(paymentDay);
+        YearMonth month = YearMonth.from(now);
+        LocalDateTime nextPayment = month.atDay(Math.min(paymentDay, month.lengthOfMonth())).atTime(now.toLocalTime());
         
         if (nextPayment.isBefore(now) || nextPayment.isEqual(now)) {
-            nextPayment = nextPayment.plusMonths(1);
+            month = month.plusMonths(1);
+            nextPayment = month.atDay(Math.min(paymentDay, month.lengthOfMonth())).atTime(now.toLocalTime());
         }
         
         return nextPayment;
     }
-} 
\ No newline at end of file
+}
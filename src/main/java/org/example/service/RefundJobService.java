@@ -0,0 +1,301 @@
+package org.example.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.dto.PaymentResult;
+import org.example.dto.RefundItem;
+import org.example.event.FundraisingChangedEvent;
+import org.example.model.Donation;
+import org.example.model.Fundraising;
+import org.example.model.RefundJob;
+import org.example.repository.DonationRepository;
+import org.example.repository.FundraisingRepository;
+import org.example.repository.RefundJobRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Возврат пожертвований отмененной или удаляемой кампании. Пожертвования читаются порциями
+ * по возрастанию ID, возвраты порции идут в платежный шлюз параллельно (не больше
+ * app.refunds.parallelism одновременно), а результат порции - статусы REFUNDED, одно
+ * уменьшение current_amount, статистика, агрегаты и курсор задачи - записывается одной
+ * короткой транзакцией. Память и длина транзакции ограничены размером порции, а после
+ * перезапуска задача продолжается с сохраненного курсора: шлюз не возвращает одно
+ * списание дважды, поэтому повтор незаписанной порции безопасен.
+ */
+@Slf4j
+@Service
+public class RefundJobService {
+
+    private static final int MAX_ERROR_LENGTH = 500;
+    private static final List<Donation.PaymentStatus> OPEN_STATUSES =
+            List.of(Donation.PaymentStatus.COMPLETED, Donation.PaymentStatus.PENDING);
+
+    private final RefundJobRepository refundJobRepository;
+    private final DonationRepository donationRepository;
+    private final FundraisingRepository fundraisingRepository;
+    private final FundraisingService fundraisingService;
+    private final DonationStatsService donationStatsService;
+    private final DonationRollupService donationRollupService;
+    private final PaymentGateway paymentGateway;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService refundWorkers;
+    private final int chunkSize;
+    private final int maxPasses;
+    private final long leaseMs;
+    private final long retryDelayMs;
+
+    public RefundJobService(
+            RefundJobRepository refundJobRepository,
+            DonationRepository donationRepository,
+            FundraisingRepository fundraisingRepository,
+            @Lazy FundraisingService fundraisingService,
+            DonationStatsService donationStatsService,
+            DonationRollupService donationRollupService,
+            PaymentGateway paymentGateway,
+            ApplicationEventPublisher eventPublisher,
+            TransactionTemplate transactionTemplate,
+            @Value("${app.refunds.chunk-size:500}") int chunkSize,
+            @Value("${app.refunds.parallelism:8}") int parallelism,
+            @Value("${app.refunds.max-passes:5}") int maxPasses,
+            @Value("${app.refunds.lease-ms:120000}") long leaseMs,
+            @Value("${app.refunds.retry-delay-ms:60000}") long retryDelayMs) {
+        this.refundJobRepository = refundJobRepository;
+        this.donationRepository = donationRepository;
+        this.fundraisingRepository = fundraisingRepository;
+        this.fundraisingService = fundraisingService;
+        this.donationStatsService = donationStatsService;
+        this.donationRollupService = donationRollupService;
+        this.paymentGateway = paymentGateway;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = transactionTemplate;
+        this.chunkSize = chunkSize;
+        this.maxPasses = maxPasses;
+        this.leaseMs = leaseMs;
+        this.retryDelayMs = retryDelayMs;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.refundWorkers = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "refund-worker-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Нужен ли возврат: у кампании есть оплаченные или еще проводимые пожертвования
+    @Transactional(readOnly = true)
+    public boolean hasRefundableDonations(Long fundraisingId) {
+        return donationRepository.existsByFundraisingIdAndPaymentStatusIn(fundraisingId, OPEN_STATUSES);
+    }
+
+    // Вызывается в транзакции отмены кампании; повторный запрос возвращает уже запущенную задачу
+    @Transactional
+    public RefundJob startRefund(Fundraising fundraising, boolean deleteFundraising, Long userId) {
+        Optional<RefundJob> running = refundJobRepository
+                .findFirstByFundraisingIdAndStatus(fundraising.getId(), RefundJob.Status.RUNNING);
+        if (running.isPresent()) {
+            RefundJob job = running.get();
+            if (deleteFundraising && !job.isDeleteFundraising()) {
+                job.setDeleteFundraising(true);
+                refundJobRepository.save(job);
+            }
+            return job;
+        }
+
+        RefundJob job = new RefundJob();
+        job.setFundraisingId(fundraising.getId());
+        job.setCharityId(fundraising.getCharity().getId());
+        job.setRequestedByUserId(userId);
+        job.setDeleteFundraising(deleteFundraising);
+        job = refundJobRepository.save(job);
+        log.info("Запущен возврат пожертвований кампании {} (задача {}, удаление кампании: {})",
+                fundraising.getId(), job.getId(), deleteFundraising);
+        return job;
+    }
+
+    @Transactional(readOnly = true)
+    public RefundJob getLatestJob(Long fundraisingId) {
+        return refundJobRepository.findFirstByFundraisingIdOrderByIdDesc(fundraisingId)
+                .orElseThrow(() -> new RuntimeException("Возвраты по кампании не запускались"));
+    }
+
+    @Scheduled(fixedDelayString = "${app.refunds.poll-interval-ms:1000}")
+    public void run() {
+        for (Long jobId : refundJobRepository.findRunnableIds(LocalDateTime.now())) {
+            RefundJob job = claim(jobId);
+            if (job == null) {
+                continue;
+            }
+            try {
+                while (processChunk(job)) {
+                    // порции идут подряд, пока задача не завершится или не встанет на паузу
+                }
+            } catch (Exception e) {
+                // Аренда истечет, и задача продолжится с последней сохраненной порции
+                log.error("Ошибка задачи возврата {} (кампания {}): {}", job.getId(), job.getFundraisingId(), e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refundWorkers.shutdownNow();
+    }
+
+    private RefundJob claim(Long jobId) {
+        return transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            if (refundJobRepository.claim(jobId, now, now.plusNanos(leaseMs * 1_000_000)) == 0) {
+                return null;
+            }
+            return refundJobRepository.findById(jobId).orElse(null);
+        });
+    }
+
+    // Возвращает true, если за этой порцией есть следующая
+    private boolean processChunk(RefundJob job) {
+        List<RefundItem> chunk = donationRepository.findRefundable(
+                job.getFundraisingId(), job.getLastDonationId(), PageRequest.of(0, chunkSize));
+        if (chunk.isEmpty()) {
+            finishPass(job);
+            return false;
+        }
+
+        List<RefundItem> refunded = new ArrayList<>(chunk.size());
+        String lastError = null;
+        List<Future<PaymentResult>> results = submitRefunds(chunk);
+        for (int i = 0; i < chunk.size(); i++) {
+            String error;
+            try {
+                PaymentResult result = results.get(i).get();
+                if (result.isApproved()) {
+                    refunded.add(chunk.get(i));
+                    continue;
+                }
+                error = result.getMessage();
+            } catch (ExecutionException e) {
+                error = e.getCause().getMessage() != null ? e.getCause().getMessage() : e.getCause().toString();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Задача возврата прервана", e);
+            }
+            lastError = "Пожертвование " + chunk.get(i).getDonationId() + ": " + error;
+        }
+
+        int failed = chunk.size() - refunded.size();
+        String chunkError = lastError;
+        transactionTemplate.executeWithoutResult(status -> applyChunk(job, chunk, refunded, failed, chunkError));
+        log.info("Задача возврата {}: порция до пожертвования {} - возвращено {}, ошибок {}",
+                job.getId(), job.getLastDonationId(), refunded.size(), failed);
+        return true;
+    }
+
+    private List<Future<PaymentResult>> submitRefunds(List<RefundItem> chunk) {
+        List<Callable<PaymentResult>> calls = chunk.stream()
+                .<Callable<PaymentResult>>map(item -> () -> paymentGateway.refund(chargeReference(item), item.getAmount()))
+                .collect(Collectors.toList());
+        try {
+            return refundWorkers.invokeAll(calls);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Задача возврата прервана", e);
+        }
+    }
+
+    private void applyChunk(RefundJob job, List<RefundItem> chunk, List<RefundItem> refunded, int failed, String error) {
+        BigDecimal amount = BigDecimal.ZERO;
+        if (!refunded.isEmpty()) {
+            // Пожертвование могли удалить, пока шло обращение к шлюзу: учитываем только захваченные строки
+            Set<Long> lockedIds = new HashSet<>(donationRepository.lockCompletedByIds(
+                    refunded.stream().map(RefundItem::getDonationId).collect(Collectors.toList())));
+            List<RefundItem> applied = refunded.stream()
+                    .filter(item -> lockedIds.contains(item.getDonationId()))
+                    .collect(Collectors.toList());
+            if (!applied.isEmpty()) {
+                amount = applied.stream().map(RefundItem::getAmount).reduce(BigDecimal.ZERO, BigDecimal::add);
+                donationRepository.markRefunded(lockedIds);
+                fundraisingRepository.incrementCurrentAmount(job.getFundraisingId(), amount.negate());
+                donationStatsService.recordRefunds(job.getFundraisingId(), job.getCharityId(), amount);
+                donationRollupService.recordRefunds(job.getFundraisingId(), job.getCharityId(), applied);
+                eventPublisher.publishEvent(new FundraisingChangedEvent(job.getFundraisingId(), job.getCharityId()));
+            }
+            job.setRefundedCount(job.getRefundedCount() + applied.size());
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        job.setLastDonationId(chunk.get(chunk.size() - 1).getDonationId());
+        job.setRefundedAmount(job.getRefundedAmount().add(amount));
+        job.setFailedCount(job.getFailedCount() + failed);
+        if (error != null) {
+            job.setLastError(truncate(error));
+        }
+        job.setLockedUntil(now.plusNanos(leaseMs * 1_000_000));
+        job.setUpdatedAt(now);
+        refundJobRepository.save(job);
+    }
+
+    // Конец прохода. Пожертвования, чей платеж или учет еще не завершен, а также не возвращенные
+    // из-за ошибок, подбирает следующий проход после паузы
+    private void finishPass(RefundJob job) {
+        LocalDateTime now = LocalDateTime.now();
+        boolean remaining = hasRefundableDonations(job.getFundraisingId());
+        if (!remaining) {
+            job.setStatus(RefundJob.Status.COMPLETED);
+            job.setFinishedAt(now);
+            log.info("Задача возврата {} завершена: кампания {}, возвращено {} пожертвований на сумму {}",
+                    job.getId(), job.getFundraisingId(), job.getRefundedCount(), job.getRefundedAmount());
+        } else if (job.getFailedCount() > 0 && job.getPass() >= maxPasses) {
+            job.setStatus(RefundJob.Status.FAILED);
+            job.setFinishedAt(now);
+            log.error("Задача возврата {} остановлена после {} проходов: {}", job.getId(), job.getPass(), job.getLastError());
+        } else {
+            if (job.getFailedCount() > 0) {
+                job.setPass(job.getPass() + 1);
+                job.setFailedCount(0);
+            }
+            job.setLastDonationId(0);
+            job.setLockedUntil(now.plusNanos(retryDelayMs * 1_000_000));
+        }
+        job.setUpdatedAt(now);
+        // Кампания удаляется в одной транзакции с завершением задачи: при ошибке задача повторит проход
+        transactionTemplate.executeWithoutResult(status -> {
+            refundJobRepository.save(job);
+            if (job.getStatus() == RefundJob.Status.COMPLETED && job.isDeleteFundraising()) {
+                fundraisingService.deleteFundraising(job.getFundraisingId(), job.getRequestedByUserId());
+            }
+        });
+    }
+
+    // Пакетные пожертвования партнеров сохраняются без transactionId; для шлюза их списание - ID пожертвования
+    private String chargeReference(RefundItem item) {
+        return item.getTransactionId() != null ? item.getTransactionId() : "donation-" + item.getDonationId();
+    }
+
+    private String truncate(String message) {
+        if (message == null) {
+            return null;
+        }
+        return message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message;
+    }
+}
@@ -2,10 +2,16 @@ package org.example.service;
 
 import lombok.extern.slf4j.Slf4j;
 import org.example.dto.CreateReportRequest;
+import org.example.dto.CursorPage;
+import org.example.dto.ReportSummary;
+import org.example.event.FundraisingChangedEvent;
 import org.example.model.Fundraising;
 import org.example.model.Report;
 import org.example.repository.FundraisingRepository;
 import org.example.repository.ReportRepository;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
@@ -16,29 +22,37 @@ import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
-import java.util.stream.Collectors;
 import java.util.ArrayList;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 public class ReportService {
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final ReportRepository reportRepository;
     private final FundraisingRepository fundraisingRepository;
     private final FundraisingService fundraisingService;
+    private final ApplicationEventPublisher eventPublisher;
 
     public ReportService(
             ReportRepository reportRepository,
             @Lazy FundraisingRepository fundraisingRepository,
-            @Lazy FundraisingService fundraisingService) {
+            @Lazy FundraisingService fundraisingService,
+            ApplicationEventPublisher eventPublisher) {
         this.reportRepository = reportRepository;
         this.fundraisingRepository = fundraisingRepository;
         this.fundraisingService = fundraisingService;
+        this.eventPublisher = eventPublisher;
     }
 
     @Transactional
@@ -83,6 +97,7 @@ public class ReportService {
         fundraising.setCompleted(true);
         fundraising.setActive(false);
         fundraisingRepository.save(fundraising);
+        publishFundraisingChanged(fundraising);
 
         log.info("Отчет успешно создан, ID: {}, фандрайзинг {} помечен как завершенный", 
                 report.getId(), fundraising.getId());
@@ -97,14 +112,53 @@ public class ReportService {
     }
 
     @Transactional(readOnly = true)
-    public List<Report> getCharityReports(Long charityId) {
+    public List<ReportSummary> getFundraisingReportSummaries(Long fundraisingId) {
+        List<ReportSummary> reports = reportRepository.findFundraisingReportSummaries(fundraisingId);
+        fillDocuments(reports);
+        return reports;
+    }
+
+    @Transactional(readOnly = true)
+    public List<ReportSummary> getCharityReports(Long charityId) {
         log.debug("Получение отчетов для благотворительной организации {}", charityId);
-        List<Fundraising> fundraisings = fundraisingRepository.findByCharityId(charityId);
-        return fundraisings.stream()
-                .map(f -> reportRepository.findByFundraisingIdOrderByReportDateDesc(f.getId()))
-                .flatMap(List::stream)
-                .sorted((r1, r2) -> r2.getReportDate().compareTo(r1.getReportDate()))
-                .collect(Collectors.toList());
+        List<ReportSummary> reports = reportRepository.findCharityReportSummaries(charityId, Pageable.unpaged());
+        fillDocuments(reports);
+        return reports;
+    }
+
+    // Курсор - дата и ID последнего отчета страницы: <reportDate>_<id>
+    @Transactional(readOnly = true)
+    public CursorPage<ReportSummary> getCharityReportsPage(Long charityId, String after, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        log.debug("Получение страницы отчетов организации {} после {} (лимит {})", charityId, after, pageSize);
+
+        // Запрашиваем на одну запись больше, чтобы понять, есть ли следующая страница
+        Pageable pageable = PageRequest.of(0, pageSize + 1);
+        List<ReportSummary> reports;
+        if (after == null || after.isBlank()) {
+            reports = reportRepository.findCharityReportSummaries(charityId, pageable);
+        } else {
+            int separator = after.lastIndexOf('_');
+            LocalDateTime beforeDate;
+            Long beforeId;
+            try {
+                beforeDate = LocalDateTime.parse(after.substring(0, separator));
+                beforeId = Long.valueOf(after.substring(separator + 1));
+            } catch (IndexOutOfBoundsException | DateTimeParseException | NumberFormatException e) {
+                log.warn("Некорректный курсор страницы отчетов: {}", after);
+                throw new RuntimeException("Некорректный курсор страницы");
+            }
+            reports = reportRepository.findCharityReportSummariesBefore(charityId, beforeDate, beforeId, pageable);
+        }
+        boolean hasMore = reports.size() > pageSize;
+        if (hasMore) {
+            reports = reports.subList(0, pageSize);
+        }
+        fillDocuments(reports);
+
+        ReportSummary last = hasMore ? reports.get(reports.size() - 1) : null;
+        String nextCursor = last != null ? last.getReportDate() + "_" + last.getId() : null;
+        return new CursorPage<>(reports, nextCursor);
     }
 
     @Transactional
@@ -118,7 +172,10 @@ public class ReportService {
                 });
 
         report.setVerified(true);
-        return reportRepository.save(report);
+        report = reportRepository.save(report);
+        reportRepository.incrementVersion(report.getId());
+        publishFundraisingChanged(report.getFundraising());
+        return report;
     }
 
     @Transactional
@@ -162,6 +219,8 @@ public class ReportService {
                 report.getDocumentDescriptions().addAll(descriptions);
             }
             report = reportRepository.save(report);
+            reportRepository.incrementVersion(report.getId());
+            publishFundraisingChanged(report.getFundraising());
 
             log.info("Документы успешно добавлены в отчет {}", reportId);
             return report;
@@ -196,6 +255,25 @@ public class ReportService {
         return fileUrl;
     }
 
+    // Документы всех отчетов списка - двумя запросами по ID отчетов
+    private void fillDocuments(List<ReportSummary> reports) {
+        if (reports.isEmpty()) {
+            return;
+        }
+        Map<Long, ReportSummary> byId = reports.stream()
+                .collect(Collectors.toMap(ReportSummary::getId, Function.identity()));
+        reportRepository.findDocumentUrls(byId.keySet())
+                .forEach(row -> byId.get((Long) row[0]).getDocumentUrls().add((String) row[1]));
+        reportRepository.findDocumentDescriptions(byId.keySet())
+                .forEach(row -> byId.get((Long) row[0]).getDocumentDescriptions().add((String) row[1]));
+    }
+
+    // Отчеты входят в ответ по кампании, поэтому их изменение сбрасывает кэш кампании
+    private void publishFundraisingChanged(Fundraising fundraising) {
+        eventPublisher.publishEvent(new FundraisingChangedEvent(
+                fundraising.getId(), fundraising.getCharity().getId()));
+    }
+
     @Transactional(readOnly = true)
     public Report getReportById(Long reportId) {
         log.debug("Получение отчета по ID: {}", reportId);
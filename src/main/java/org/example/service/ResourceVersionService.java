@@ -0,0 +1,100 @@
+package org.example.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.event.CharityChangedEvent;
+import org.example.event.FundraisingChangedEvent;
+import org.example.repository.CharityRepository;
+import org.example.repository.FundraisingRepository;
+import org.example.repository.ReportRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Версии организаций, кампаний и отчетов для ETag. Версия поднимается после коммита изменения
+ * в своей короткой транзакции: пишущая транзакция (пожертвование, возврат, сброс счетчика
+ * общего фонда) не блокирует строки кампании и организации ради ETag. Все, что сбрасывает
+ * кэш ответов, увеличивает и версию; версии отчетов поднимает ReportService.
+ */
+@Slf4j
+@Service
+public class ResourceVersionService {
+
+    private final CharityRepository charityRepository;
+    private final FundraisingRepository fundraisingRepository;
+    private final ReportRepository reportRepository;
+    private final ResponseCacheService responseCacheService;
+    private final TransactionTemplate bumpTransaction;
+
+    public ResourceVersionService(
+            CharityRepository charityRepository,
+            FundraisingRepository fundraisingRepository,
+            ReportRepository reportRepository,
+            ResponseCacheService responseCacheService,
+            PlatformTransactionManager transactionManager) {
+        this.charityRepository = charityRepository;
+        this.fundraisingRepository = fundraisingRepository;
+        this.reportRepository = reportRepository;
+        this.responseCacheService = responseCacheService;
+        this.bumpTransaction = new TransactionTemplate(transactionManager);
+        this.bumpTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCharityChanged(CharityChangedEvent event) {
+        bump(() -> charityRepository.incrementVersion(event.getCharityId()),
+                () -> responseCacheService.evictCharity(event.getCharityId()));
+    }
+
+    // Удаленная кампания просто не найдется: UPDATE ничего не изменит
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFundraisingChanged(FundraisingChangedEvent event) {
+        bump(() -> {
+            fundraisingRepository.incrementVersion(event.getFundraisingId());
+            charityRepository.incrementVersion(event.getCharityId());
+        }, () -> responseCacheService.evictFundraising(event.getFundraisingId(), event.getCharityId()));
+    }
+
+    @Transactional(readOnly = true)
+    public String getCharityEtag(Long charityId) {
+        return charityRepository.findVersionById(charityId)
+                .map(version -> weakEtag("c" + charityId + "-" + version))
+                .orElseThrow(() -> {
+                    log.error("Благотворительная организация с ID {} не найдена", charityId);
+                    return new RuntimeException("Благотворительная организация не найдена");
+                });
+    }
+
+    @Transactional(readOnly = true)
+    public String getFundraisingEtag(Long fundraisingId) {
+        return fundraisingRepository.findVersionById(fundraisingId)
+                .map(version -> weakEtag("f" + fundraisingId + "-" + version))
+                .orElseThrow(() -> {
+                    log.error("Фандрайзинговая кампания с ID {} не найдена", fundraisingId);
+                    return new RuntimeException("Фандрайзинговая кампания не найдена");
+                });
+    }
+
+    @Transactional(readOnly = true)
+    public String getFundraisingReportsEtag(Long fundraisingId) {
+        return weakEtag("r" + fundraisingId + "-" + reportRepository.getListFingerprint(fundraisingId));
+    }
+
+    // Изменение уже закоммичено, поэтому откатывать нечего. Кэш сбрасывается повторно: GET между
+    // сбросом и неудачным подъемом версии мог снова положить в него тело, собранное под старым ETag
+    private void bump(Runnable update, Runnable evict) {
+        try {
+            bumpTransaction.executeWithoutResult(status -> update.run());
+        } catch (Exception e) {
+            log.warn("Не удалось увеличить версию для ETag: {}", e.getMessage());
+            evict.run();
+        }
+    }
+
+    private String weakEtag(String value) {
+        return "W/\"" + value + "\"";
+    }
+}
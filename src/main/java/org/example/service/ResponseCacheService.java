@@ -0,0 +1,126 @@
+package org.example.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.extern.slf4j.Slf4j;
+import org.example.dto.CharityResponse;
+import org.example.dto.FundraisingDetailsResponse;
+import org.example.dto.FundraisingResponse;
+import org.example.dto.ReportSummary;
+import org.example.event.CharityChangedEvent;
+import org.example.event.FundraisingChangedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Кэш собранных ответов по организациям и кампаниям. Хранятся только DTO ответов, не сущности.
+ * Записи вытесняются по суммарному весу и TTL: вес - число элементов ответа (документы, кампании,
+ * отчеты), поэтому крупные организации занимают больше места в лимите. При изменениях записи
+ * сбрасываются после коммита транзакции, в которой они произошли, и раньше, чем поднимется версия
+ * ETag: иначе GET в этом зазоре закэширует у клиента старое тело под новым ETag.
+ */
+@Slf4j
+@Service
+public class ResponseCacheService {
+
+    private final Cache<Long, CharityResponse> charities;
+    private final Cache<Long, FundraisingDetailsResponse> fundraisings;
+
+    public ResponseCacheService(
+            @Value("${app.cache.max-weight:100000}") long maxWeight,
+            @Value("${app.cache.ttl-seconds:300}") long ttlSeconds) {
+        this.charities = Caffeine.newBuilder()
+                .maximumWeight(maxWeight)
+                .weigher((Long id, CharityResponse response) -> weigh(response))
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        this.fundraisings = Caffeine.newBuilder()
+                .maximumWeight(maxWeight)
+                .weigher((Long id, FundraisingDetailsResponse response) -> weigh(response))
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+    }
+
+    public CharityResponse getCharity(Long charityId, Supplier<CharityResponse> loader) {
+        return charities.get(charityId, id -> loader.get());
+    }
+
+    public FundraisingDetailsResponse getFundraising(Long fundraisingId, Supplier<FundraisingDetailsResponse> loader) {
+        return fundraisings.get(fundraisingId, id -> loader.get());
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCharityChanged(CharityChangedEvent event) {
+        evictCharity(event.getCharityId());
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFundraisingChanged(FundraisingChangedEvent event) {
+        evictFundraising(event.getFundraisingId(), event.getCharityId());
+    }
+
+    public void evictCharity(Long charityId) {
+        log.debug("Сброс кэша организации {}", charityId);
+        charities.invalidate(charityId);
+    }
+
+    public void evictFundraising(Long fundraisingId, Long charityId) {
+        log.debug("Сброс кэша кампании {} и организации {}", fundraisingId, charityId);
+        fundraisings.invalidate(fundraisingId);
+        charities.invalidate(charityId);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("charities", describe(charities.stats(), charities.estimatedSize(), charities));
+        stats.put("fundraisings", describe(fundraisings.stats(), fundraisings.estimatedSize(), fundraisings));
+        return stats;
+    }
+
+    private static int weigh(CharityResponse response) {
+        int weight = 1 + size(response.getDocuments());
+        if (response.getFundraisings() != null) {
+            for (FundraisingResponse fundraising : response.getFundraisings()) {
+                weight += 1 + size(fundraising.getDocuments());
+            }
+        }
+        return weight;
+    }
+
+    private static int weigh(FundraisingDetailsResponse response) {
+        int weight = 1 + size(response.getDocuments());
+        for (ReportSummary report : response.getReports()) {
+            weight += 1 + size(report.getDocumentUrls()) + size(report.getDocumentDescriptions());
+        }
+        return weight;
+    }
+
+    private static int size(List<?> list) {
+        return list != null ? list.size() : 0;
+    }
+
+    private Map<String, Object> describe(CacheStats stats, long size, Cache<?, ?> cache) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("size", size);
+        cache.policy().eviction().ifPresent(eviction -> result.put("weight", eviction.weightedSize().orElse(0)));
+        result.put("hits", stats.hitCount());
+        result.put("misses", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("evictions", stats.evictionCount());
+        return result;
+    }
+}
@@ -0,0 +1,218 @@
+package org.example.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.dto.SearchResponse;
+import org.example.dto.SearchResult;
+import org.example.event.CharityChangedEvent;
+import org.example.event.FundraisingChangedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Полнотекстовый поиск по организациям, кампаниям и отчетам. На PostgreSQL используются
+ * tsvector-колонки из V16__add_search_vectors.sql, иначе - встроенный индекс в памяти,
+ * который обновляется после коммита изменений.
+ */
+@Slf4j
+@Service
+public class SearchService {
+
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int DESCRIPTION_LENGTH = 200;
+
+    private static final String CHARITY = "CHARITY";
+    private static final String FUNDRAISING = "FUNDRAISING";
+    private static final String REPORT = "REPORT";
+    private static final List<String> SEARCH_TABLES = List.of("charities", "fundraisings", "reports");
+
+    private static final String HITS_SQL =
+            "SELECT 'CHARITY' AS type, c.id, c.name AS title, left(c.description, 200) AS description, " +
+            "       ts_rank(c.search_vector, q) AS rank " +
+            "FROM charities c, websearch_to_tsquery('russian', :query) q WHERE c.search_vector @@ q " +
+            "UNION ALL " +
+            "SELECT 'FUNDRAISING', f.id, f.title, left(f.description, 200), ts_rank(f.search_vector, q) " +
+            "FROM fundraisings f, websearch_to_tsquery('russian', :query) q WHERE f.search_vector @@ q " +
+            "UNION ALL " +
+            "SELECT 'REPORT', r.id, r.title, left(r.description, 200), ts_rank(r.search_vector, q) " +
+            "FROM reports r, websearch_to_tsquery('russian', :query) q WHERE r.search_vector @@ q";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final String backend;
+    private final InMemorySearchIndex memoryIndex = new InMemorySearchIndex();
+    // Отчеты кампании в индексе, чтобы при переиндексации убрать удаленные
+    private final Map<Long, Set<Long>> reportsByFundraising = new ConcurrentHashMap<>();
+    private volatile boolean usePostgres;
+
+    public SearchService(
+            NamedParameterJdbcTemplate jdbcTemplate,
+            @Value("${app.search.backend:auto}") String backend) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.backend = backend;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        usePostgres = "postgres".equalsIgnoreCase(backend)
+                || ("auto".equalsIgnoreCase(backend) && hasSearchVectors());
+        if (usePostgres) {
+            log.info("Полнотекстовый поиск: PostgreSQL tsvector");
+            return;
+        }
+
+        memoryIndex.clear();
+        reportsByFundraising.clear();
+        jdbcTemplate.query("SELECT id, name, description FROM charities", rs -> {
+            indexCharity(rs);
+        });
+        jdbcTemplate.query("SELECT id, title, description, diagnosis FROM fundraisings", rs -> {
+            indexFundraising(rs);
+        });
+        jdbcTemplate.query("SELECT id, fundraising_id, title, description FROM reports", rs -> {
+            indexReport(rs);
+        });
+        log.info("Полнотекстовый поиск: встроенный индекс, {} документов", memoryIndex.size());
+    }
+
+    public SearchResponse search(String query, int page, int size) {
+        if (query == null || query.isBlank()) {
+            throw new RuntimeException("Поисковый запрос не может быть пустым");
+        }
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        int pageNumber = Math.max(0, page);
+        int offset = pageNumber * pageSize;
+        log.debug("Поиск '{}', страница {} (размер {})", query, pageNumber, pageSize);
+
+        if (!usePostgres) {
+            List<SearchResult> hits = memoryIndex.search(query);
+            List<SearchResult> items = offset < hits.size()
+                    ? hits.subList(offset, Math.min(offset + pageSize, hits.size()))
+                    : List.of();
+            return new SearchResponse(items, hits.size(), pageNumber, pageSize);
+        }
+
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("query", query.trim())
+                .addValue("limit", pageSize)
+                .addValue("offset", offset);
+        long[] total = {0};
+        List<SearchResult> items = jdbcTemplate.query(
+                "SELECT hits.*, COUNT(*) OVER () AS total FROM (" + HITS_SQL + ") hits " +
+                "ORDER BY rank DESC, type, id LIMIT :limit OFFSET :offset",
+                params,
+                (rs, rowNum) -> {
+                    total[0] = rs.getLong("total");
+                    return new SearchResult(rs.getString("type"), rs.getLong("id"), rs.getString("title"),
+                            rs.getString("description"), rs.getDouble("rank"));
+                });
+        if (items.isEmpty() && offset > 0) {
+            // Страница за пределами выдачи: общее количество считаем отдельно
+            Long count = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM (" + HITS_SQL + ") hits", params, Long.class);
+            total[0] = count != null ? count : 0;
+        }
+        return new SearchResponse(items, total[0], pageNumber, pageSize);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCharityChanged(CharityChangedEvent event) {
+        if (usePostgres) {
+            return;
+        }
+        Long charityId = event.getCharityId();
+        memoryIndex.remove(CHARITY, charityId);
+        jdbcTemplate.query("SELECT id, name, description FROM charities WHERE id = :id",
+                Map.of("id", charityId), rs -> {
+                    indexCharity(rs);
+                });
+    }
+
+    // Отчеты публикуют изменение своей кампании, поэтому вместе с ней переиндексируются и они
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFundraisingChanged(FundraisingChangedEvent event) {
+        if (usePostgres) {
+            return;
+        }
+        Long fundraisingId = event.getFundraisingId();
+        memoryIndex.remove(FUNDRAISING, fundraisingId);
+        Set<Long> previousReports = reportsByFundraising.remove(fundraisingId);
+        if (previousReports != null) {
+            previousReports.forEach(reportId -> memoryIndex.remove(REPORT, reportId));
+        }
+
+        Map<String, Long> params = Map.of("id", fundraisingId);
+        jdbcTemplate.query("SELECT id, title, description, diagnosis FROM fundraisings WHERE id = :id",
+                params, rs -> {
+                    indexFundraising(rs);
+                });
+        jdbcTemplate.query("SELECT id, fundraising_id, title, description FROM reports WHERE fundraising_id = :id",
+                params, rs -> {
+                    indexReport(rs);
+                });
+    }
+
+    private void indexCharity(ResultSet rs) throws SQLException {
+        String name = rs.getString("name");
+        String description = rs.getString("description");
+        memoryIndex.put(CHARITY, rs.getLong("id"), name, truncate(description),
+                new InMemorySearchIndex.Field(name, 1.0),
+                new InMemorySearchIndex.Field(description, 0.4));
+    }
+
+    private void indexFundraising(ResultSet rs) throws SQLException {
+        String title = rs.getString("title");
+        String description = rs.getString("description");
+        memoryIndex.put(FUNDRAISING, rs.getLong("id"), title, truncate(description),
+                new InMemorySearchIndex.Field(title, 1.0),
+                new InMemorySearchIndex.Field(rs.getString("diagnosis"), 0.4),
+                new InMemorySearchIndex.Field(description, 0.2));
+    }
+
+    private void indexReport(ResultSet rs) throws SQLException {
+        long reportId = rs.getLong("id");
+        String title = rs.getString("title");
+        String description = rs.getString("description");
+        memoryIndex.put(REPORT, reportId, title, truncate(description),
+                new InMemorySearchIndex.Field(title, 1.0),
+                new InMemorySearchIndex.Field(description, 0.2));
+        reportsByFundraising.computeIfAbsent(rs.getLong("fundraising_id"), id -> ConcurrentHashMap.newKeySet()).add(reportId);
+    }
+
+    private boolean hasSearchVectors() {
+        Boolean available = jdbcTemplate.getJdbcTemplate().execute((ConnectionCallback<Boolean>) connection -> {
+            if (!"PostgreSQL".equalsIgnoreCase(connection.getMetaData().getDatabaseProductName())) {
+                return false;
+            }
+            // Запрос обращается к колонке каждой из таблиц, поэтому нужны все три
+            for (String table : SEARCH_TABLES) {
+                try (ResultSet columns = connection.getMetaData().getColumns(null, null, table, "search_vector")) {
+                    if (!columns.next()) {
+                        log.info("В таблице {} нет колонки search_vector", table);
+                        return false;
+                    }
+                }
+            }
+            return true;
+        });
+        if (!Boolean.TRUE.equals(available)) {
+            log.info("База без колонок search_vector, используется встроенный поисковый индекс");
+        }
+        return Boolean.TRUE.equals(available);
+    }
+
+    private String truncate(String text) {
+        return text != null && text.length() > DESCRIPTION_LENGTH ? text.substring(0, DESCRIPTION_LENGTH) : text;
+    }
+}
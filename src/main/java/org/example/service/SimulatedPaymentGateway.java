@@ -0,0 +1,79 @@
+package org.example.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.example.dto.PaymentResult;
+import org.example.exception.PaymentGatewayException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Локальная имитация платежного шлюза для разработки и нагрузочных тестов: задержка ответа,
+ * доля временных ошибок и доля отказов настраиваются в app.payments.simulated.*.
+ * Результаты запоминаются по transactionId, как это делает настоящий шлюз.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "app.payments.gateway", havingValue = "simulated", matchIfMissing = true)
+public class SimulatedPaymentGateway implements PaymentGateway {
+
+    private final long latencyMs;
+    private final long latencyJitterMs;
+    private final double failureRate;
+    private final double declineRate;
+    private final Cache<String, PaymentResult> results = newResultCache();
+    private final Cache<String, PaymentResult> refunds = newResultCache();
+
+    public SimulatedPaymentGateway(
+            @Value("${app.payments.simulated.latency-ms:200}") long latencyMs,
+            @Value("${app.payments.simulated.latency-jitter-ms:100}") long latencyJitterMs,
+            @Value("${app.payments.simulated.failure-rate:0.0}") double failureRate,
+            @Value("${app.payments.simulated.decline-rate:0.0}") double declineRate) {
+        this.latencyMs = latencyMs;
+        this.latencyJitterMs = latencyJitterMs;
+        this.failureRate = failureRate;
+        this.declineRate = declineRate;
+        log.info("Используется имитация платежного шлюза: задержка {} мс, ошибки {}, отказы {}",
+                latencyMs, failureRate, declineRate);
+    }
+
+    @Override
+    public PaymentResult charge(String transactionId, BigDecimal amount, String paymentMethod) {
+        simulateCall();
+        return results.get(transactionId, id -> ThreadLocalRandom.current().nextDouble() < declineRate
+                ? PaymentResult.declined("Платеж отклонен банком")
+                : PaymentResult.approved());
+    }
+
+    @Override
+    public PaymentResult refund(String transactionId, BigDecimal amount) {
+        simulateCall();
+        return refunds.get(transactionId, id -> PaymentResult.approved());
+    }
+
+    private void simulateCall() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        try {
+            Thread.sleep(latencyMs + (latencyJitterMs > 0 ? random.nextLong(latencyJitterMs + 1) : 0));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PaymentGatewayException("Запрос к платежному шлюзу прерван", e);
+        }
+        if (random.nextDouble() < failureRate) {
+            throw new PaymentGatewayException("Платежный шлюз временно недоступен");
+        }
+    }
+
+    private static Cache<String, PaymentResult> newResultCache() {
+        return Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterWrite(Duration.ofHours(24))
+                .build();
+    }
+}
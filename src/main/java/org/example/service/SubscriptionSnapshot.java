@@ -0,0 +1,137 @@
+package org.example.service;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Компактный снимок активных подписок для прогноза поступлений: параллельные массивы примитивов
+ * вместо сущностей, по строке на подписку. Сумма хранится в копейках, срок следующего списания -
+ * номером месяца (год * 12 + месяц). Удаленная подписка заменяется последней строкой, поэтому
+ * массивы остаются плотными, а прогноз - один проход без обращения к объектам.
+ */
+final class SubscriptionSnapshot {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // Накопитель прогноза одной кампании: суммы и число платежей по месяцам горизонта
+    static final class Projection {
+        long subscriptions;
+        final long[] amounts;
+        final long[] payments;
+
+        Projection(int months) {
+            this.amounts = new long[months];
+            this.payments = new long[months];
+        }
+    }
+
+    private final Map<Long, Integer> slots = new HashMap<>();
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private long[] fundraisingIds = new long[INITIAL_CAPACITY];
+    private long[] amounts = new long[INITIAL_CAPACITY];
+    private int[] firstMonths = new int[INITIAL_CAPACITY];
+    private int size;
+
+    static int monthIndex(int year, int month) {
+        return year * 12 + month - 1;
+    }
+
+    // Добавляет подписку или обновляет ее строку
+    void put(long id, long fundraisingId, long amount, int firstMonth) {
+        Integer slot = slots.get(id);
+        if (slot == null) {
+            if (size == ids.length) {
+                grow();
+            }
+            slot = size++;
+            slots.put(id, slot);
+            ids[slot] = id;
+        }
+        fundraisingIds[slot] = fundraisingId;
+        amounts[slot] = amount;
+        firstMonths[slot] = firstMonth;
+    }
+
+    // Переносит срок известной подписки; false - подписки в снимке нет
+    boolean move(long id, int firstMonth) {
+        Integer slot = slots.get(id);
+        if (slot == null) {
+            return false;
+        }
+        firstMonths[slot] = firstMonth;
+        return true;
+    }
+
+    void remove(long id) {
+        Integer slot = slots.remove(id);
+        if (slot == null) {
+            return;
+        }
+        int last = --size;
+        if (slot != last) {
+            ids[slot] = ids[last];
+            fundraisingIds[slot] = fundraisingIds[last];
+            amounts[slot] = amounts[last];
+            firstMonths[slot] = firstMonths[last];
+            slots.put(ids[slot], slot);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Прогноз по кампаниям из sortedFundraisingIds (по возрастанию) на months месяцев от fromMonth.
+     * Подписка платит каждый месяц, начиная с месяца следующего списания; просроченная - с fromMonth.
+     * Элемент результата соответствует кампании с тем же индексом и равен null, если подписок нет.
+     */
+    Projection[] project(long[] sortedFundraisingIds, int fromMonth, int months) {
+        Projection[] result = new Projection[sortedFundraisingIds.length];
+        if (sortedFundraisingIds.length == 0) {
+            return result;
+        }
+        long minId = sortedFundraisingIds[0];
+        long maxId = sortedFundraisingIds[sortedFundraisingIds.length - 1];
+        for (int slot = 0; slot < size; slot++) {
+            long fundraisingId = fundraisingIds[slot];
+            if (fundraisingId < minId || fundraisingId > maxId) {
+                continue;
+            }
+            int index = sortedFundraisingIds.length == 1 ? 0 : Arrays.binarySearch(sortedFundraisingIds, fundraisingId);
+            if (index < 0) {
+                continue;
+            }
+            Projection projection = result[index];
+            if (projection == null) {
+                projection = new Projection(months);
+                result[index] = projection;
+            }
+            projection.subscriptions++;
+            // Здесь отмечается только месяц первого платежа; накопленная сумма считается ниже
+            int offset = Math.max(0, firstMonths[slot] - fromMonth);
+            if (offset < months) {
+                projection.amounts[offset] += amounts[slot];
+                projection.payments[offset]++;
+            }
+        }
+        for (Projection projection : result) {
+            if (projection != null) {
+                for (int month = 1; month < months; month++) {
+                    projection.amounts[month] += projection.amounts[month - 1];
+                    projection.payments[month] += projection.payments[month - 1];
+                }
+            }
+        }
+        return result;
+    }
+
+    private void grow() {
+        int capacity = ids.length * 2;
+        ids = Arrays.copyOf(ids, capacity);
+        fundraisingIds = Arrays.copyOf(fundraisingIds, capacity);
+        amounts = Arrays.copyOf(amounts, capacity);
+        firstMonths = Arrays.copyOf(firstMonths, capacity);
+    }
+}
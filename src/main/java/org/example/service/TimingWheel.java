@@ -0,0 +1,134 @@
+package org.example.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Иерархическое колесо таймеров. Уровень 0 делит время на слоты по tickMs, каждый следующий
+ * уровень - на слоты в wheelSize раз длиннее. Срок попадает на самый нижний уровень, который
+ * его вмещает, и при обороте нижнего колеса слот верхнего уровня раскладывается ниже, поэтому
+ * постановка, отмена и срабатывание стоят O(1) на запись, а не просмотр всех сроков.
+ * Перенос срока не ищет старую запись: она остается в слоте и пропускается при разборе.
+ */
+final class TimingWheel {
+
+    private static final class Entry {
+        final long id;
+        final long deadline;
+
+        Entry(long id, long deadline) {
+            this.id = id;
+            this.deadline = deadline;
+        }
+    }
+
+    private final long tickMs;
+    private final int wheelSize;
+    private final long[] slotSpans;
+    private final List<Entry>[][] slots;
+    private final Map<Long, Entry> entries = new HashMap<>();
+    private List<Entry> expired = new ArrayList<>();
+    private long currentTick;
+
+    @SuppressWarnings("unchecked")
+    TimingWheel(long tickMs, int wheelSize, int levels, long startMillis) {
+        this.tickMs = tickMs;
+        this.wheelSize = wheelSize;
+        this.slotSpans = new long[levels];
+        this.slots = new List[levels][wheelSize];
+        long span = 1;
+        for (int level = 0; level < levels; level++) {
+            slotSpans[level] = span;
+            span *= wheelSize;
+        }
+        this.currentTick = startMillis / tickMs;
+    }
+
+    // Ставит или переносит срок записи
+    synchronized void schedule(long id, long deadlineMillis) {
+        Entry entry = new Entry(id, deadlineMillis);
+        entries.put(id, entry);
+        place(entry);
+    }
+
+    synchronized void cancel(long id) {
+        entries.remove(id);
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    // Сдвигает колесо до nowMillis и возвращает записи, чей срок наступил; они удаляются из колеса
+    synchronized List<Long> advance(long nowMillis) {
+        List<Long> due = new ArrayList<>();
+        long targetTick = nowMillis / tickMs;
+        while (currentTick < targetTick) {
+            currentTick++;
+            cascade(1);
+            int index = (int) (currentTick % wheelSize);
+            List<Entry> bucket = slots[0][index];
+            if (bucket != null) {
+                slots[0][index] = null;
+                drain(bucket, due);
+            }
+        }
+        drain(expired, due);
+        return due;
+    }
+
+    // Оборот уровня level - 1 раскладывает текущий слот уровня level; выше - только когда обернулся и он
+    private void cascade(int level) {
+        if (level >= slots.length || currentTick % slotSpans[level] != 0) {
+            return;
+        }
+        cascade(level + 1);
+        int index = (int) ((currentTick / slotSpans[level]) % wheelSize);
+        List<Entry> bucket = slots[level][index];
+        if (bucket != null) {
+            slots[level][index] = null;
+            bucket.forEach(this::place);
+        }
+    }
+
+    private void drain(List<Entry> bucket, List<Long> due) {
+        if (bucket == expired) {
+            expired = new ArrayList<>();
+        }
+        for (Entry entry : bucket) {
+            if (entries.get(entry.id) != entry) {
+                continue;
+            }
+            if (entry.deadline / tickMs <= currentTick) {
+                entries.remove(entry.id);
+                due.add(entry.id);
+            } else {
+                place(entry);
+            }
+        }
+    }
+
+    private void place(Entry entry) {
+        long deadlineTick = entry.deadline / tickMs;
+        long delay = deadlineTick - currentTick;
+        if (delay <= 0) {
+            expired.add(entry);
+            return;
+        }
+        int level = 0;
+        while (level < slots.length - 1 && delay >= slotSpans[level + 1]) {
+            level++;
+        }
+        // Срок дальше верхнего уровня ставится в его последний слот и будет разложен заново
+        long slotTick = Math.min(deadlineTick, currentTick + slotSpans[level] * (wheelSize - 1));
+        int index = (int) ((slotTick / slotSpans[level]) % wheelSize);
+        List<Entry> bucket = slots[level][index];
+        if (bucket == null) {
+            bucket = new ArrayList<>();
+            slots[level][index] = bucket;
+        }
+        bucket.add(entry);
+    }
+}
@@ -0,0 +1,51 @@
+-- Денормализованная статистика пожертвований по кампаниям и организациям
+CREATE TABLE fundraising_stats (
+    fundraising_id BIGINT PRIMARY KEY,
+    charity_id BIGINT NOT NULL,
+    total_amount NUMERIC(19, 2) NOT NULL DEFAULT 0,
+    donor_count BIGINT NOT NULL DEFAULT 0,
+    recurring_count BIGINT NOT NULL DEFAULT 0,
+    donation_count BIGINT NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP,
+    FOREIGN KEY (fundraising_id) REFERENCES fundraisings(id) ON DELETE CASCADE,
+    FOREIGN KEY (charity_id) REFERENCES charities(id) ON DELETE CASCADE
+);
+
+CREATE TABLE charity_stats (
+    charity_id BIGINT PRIMARY KEY,
+    total_amount NUMERIC(19, 2) NOT NULL DEFAULT 0,
+    donor_count BIGINT NOT NULL DEFAULT 0,
+    recurring_count BIGINT NOT NULL DEFAULT 0,
+    donation_count BIGINT NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP,
+    FOREIGN KEY (charity_id) REFERENCES charities(id) ON DELETE CASCADE
+);
+
+-- Индексы для проверки "новый ли это донор" при записи пожертвования
+CREATE INDEX IF NOT EXISTS idx_donations_fundraising_user ON donations(fundraising_id, user_id);
+CREATE INDEX IF NOT EXISTS idx_donations_user ON donations(user_id);
+CREATE INDEX IF NOT EXISTS idx_fundraisings_charity ON fundraisings(charity_id);
+
+-- Первичное заполнение из существующих пожертвований
+INSERT INTO fundraising_stats (fundraising_id, charity_id, total_amount, donor_count, recurring_count, donation_count, updated_at)
+SELECT f.id, f.charity_id,
+       COALESCE(SUM(CASE WHEN d.payment_status = 'COMPLETED' THEN d.amount ELSE 0 END), 0),
+       COUNT(DISTINCT d.user_id),
+       COALESCE(SUM(CASE WHEN d.is_recurring THEN 1 ELSE 0 END), 0),
+       COUNT(d.id),
+       CURRENT_TIMESTAMP
+FROM fundraisings f
+LEFT JOIN donations d ON d.fundraising_id = f.id
+GROUP BY f.id, f.charity_id;
+
+INSERT INTO charity_stats (charity_id, total_amount, donor_count, recurring_count, donation_count, updated_at)
+SELECT c.id,
+       COALESCE(SUM(CASE WHEN d.payment_status = 'COMPLETED' THEN d.amount ELSE 0 END), 0),
+       COUNT(DISTINCT d.user_id),
+       COALESCE(SUM(CASE WHEN d.is_recurring THEN 1 ELSE 0 END), 0),
+       COUNT(d.id),
+       CURRENT_TIMESTAMP
+FROM charities c
+LEFT JOIN fundraisings f ON f.charity_id = c.id
+LEFT JOIN donations d ON d.fundraising_id = f.id
+GROUP BY c.id;
@@ -0,0 +1,4 @@
+-- Версии ресурсов для ETag / If-None-Match
+ALTER TABLE charities ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE fundraisings ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE reports ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,23 @@
+-- Полнотекстовый поиск: генерируемые tsvector-колонки и GIN-индексы (PostgreSQL 12+)
+ALTER TABLE charities ADD COLUMN IF NOT EXISTS search_vector tsvector
+    GENERATED ALWAYS AS (
+        setweight(to_tsvector('russian', coalesce(name, '')), 'A') ||
+        setweight(to_tsvector('russian', coalesce(description, '')), 'B')
+    ) STORED;
+
+ALTER TABLE fundraisings ADD COLUMN IF NOT EXISTS search_vector tsvector
+    GENERATED ALWAYS AS (
+        setweight(to_tsvector('russian', coalesce(title, '')), 'A') ||
+        setweight(to_tsvector('russian', coalesce(diagnosis, '')), 'B') ||
+        setweight(to_tsvector('russian', coalesce(description, '')), 'C')
+    ) STORED;
+
+ALTER TABLE reports ADD COLUMN IF NOT EXISTS search_vector tsvector
+    GENERATED ALWAYS AS (
+        setweight(to_tsvector('russian', coalesce(title, '')), 'A') ||
+        setweight(to_tsvector('russian', coalesce(description, '')), 'C')
+    ) STORED;
+
+CREATE INDEX IF NOT EXISTS idx_charities_search ON charities USING GIN (search_vector);
+CREATE INDEX IF NOT EXISTS idx_fundraisings_search ON fundraisings USING GIN (search_vector);
+CREATE INDEX IF NOT EXISTS idx_reports_search ON reports USING GIN (search_vector);
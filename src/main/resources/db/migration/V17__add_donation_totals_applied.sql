@@ -0,0 +1,5 @@
+-- Пожертвования в общий фонд учитываются в current_amount и статистике пачками
+ALTER TABLE donations ADD COLUMN IF NOT EXISTS totals_applied BOOLEAN NOT NULL DEFAULT TRUE;
+
+-- Частичный индекс: неучтенных строк мало, и сброс ищет только их
+CREATE INDEX IF NOT EXISTS idx_donations_pending_totals ON donations (fundraising_id, id) WHERE totals_applied = FALSE;
@@ -0,0 +1,4 @@
+-- Donation.id выдается из последовательности с шагом 50 (allocationSize = 50 в сущности).
+-- Скрипт нужно применить до запуска новой версии: Hibernate проверяет шаг последовательности
+ALTER SEQUENCE donations_id_seq INCREMENT BY 50;
+SELECT setval('donations_id_seq', (SELECT COALESCE(MAX(id), 0) + 1 FROM donations));
@@ -0,0 +1,15 @@
+-- Исходящие события: пишутся в транзакции пожертвования, обрабатываются фоновым диспетчером
+CREATE TABLE IF NOT EXISTS outbox_events (
+    id BIGSERIAL PRIMARY KEY,
+    event_type VARCHAR(50) NOT NULL,
+    aggregate_id BIGINT NOT NULL,
+    entity_id BIGINT NOT NULL,
+    status VARCHAR(20) NOT NULL DEFAULT 'PENDING',
+    attempts INTEGER NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMP NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    last_error VARCHAR(1000)
+);
+
+CREATE INDEX IF NOT EXISTS idx_outbox_events_status ON outbox_events (status, id);
+CREATE INDEX IF NOT EXISTS idx_outbox_events_aggregate ON outbox_events (aggregate_id, status);
@@ -0,0 +1,6 @@
+-- Страницы истории пожертвований сортируются по дате внутри пользователя или кампании
+CREATE INDEX IF NOT EXISTS idx_donations_user_created ON donations (user_id, created_at DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_donations_fundraising_created ON donations (fundraising_id, created_at DESC, id DESC);
+
+-- Покрывается префиксом idx_donations_user_created
+DROP INDEX IF EXISTS idx_donations_user;
@@ -0,0 +1,16 @@
+-- Почасовые и дневные агрегаты пожертвований для графиков кампаний и организаций.
+-- donor_sketch - регистры HyperLogLog для оценки числа уникальных доноров
+CREATE TABLE IF NOT EXISTS donation_rollups (
+    scope VARCHAR(20) NOT NULL,
+    scope_id BIGINT NOT NULL,
+    granularity VARCHAR(10) NOT NULL,
+    bucket_start TIMESTAMP NOT NULL,
+    amount DECIMAL(19, 2) NOT NULL DEFAULT 0,
+    donation_count BIGINT NOT NULL DEFAULT 0,
+    donor_sketch BYTEA NOT NULL,
+    updated_at TIMESTAMP,
+    PRIMARY KEY (scope, scope_id, granularity, bucket_start)
+);
+
+CREATE INDEX IF NOT EXISTS idx_donation_rollups_range ON donation_rollups (scope, scope_id, bucket_start);
+CREATE INDEX IF NOT EXISTS idx_donation_rollups_compaction ON donation_rollups (granularity, bucket_start);
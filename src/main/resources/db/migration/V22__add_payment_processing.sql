@@ -0,0 +1,8 @@
+-- Асинхронное проведение платежей: пожертвование создается в статусе PENDING и ждет воркера,
+-- а сумма до подтверждения платежа лежит в резерве кампании
+ALTER TABLE donations ADD COLUMN IF NOT EXISTS payment_attempts INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE donations ADD COLUMN IF NOT EXISTS next_payment_attempt_at TIMESTAMP;
+ALTER TABLE donations ADD COLUMN IF NOT EXISTS payment_error VARCHAR(500);
+ALTER TABLE fundraisings ADD COLUMN IF NOT EXISTS reserved_amount NUMERIC(19, 2) NOT NULL DEFAULT 0;
+
+CREATE INDEX IF NOT EXISTS idx_donations_payment_due ON donations (payment_status, next_payment_attempt_at);
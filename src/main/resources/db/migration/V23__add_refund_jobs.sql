@@ -0,0 +1,23 @@
+-- Задачи возврата пожертвований отмененных и удаляемых кампаний; курсор last_donation_id
+-- и итоги обновляются после каждой порции
+CREATE TABLE IF NOT EXISTS refund_jobs (
+    id BIGSERIAL PRIMARY KEY,
+    fundraising_id BIGINT NOT NULL,
+    charity_id BIGINT NOT NULL,
+    requested_by_user_id BIGINT,
+    status VARCHAR(20) NOT NULL,
+    delete_fundraising BOOLEAN NOT NULL DEFAULT FALSE,
+    last_donation_id BIGINT NOT NULL DEFAULT 0,
+    pass INTEGER NOT NULL DEFAULT 1,
+    refunded_count BIGINT NOT NULL DEFAULT 0,
+    refunded_amount DECIMAL(19, 2) NOT NULL DEFAULT 0,
+    failed_count BIGINT NOT NULL DEFAULT 0,
+    last_error VARCHAR(500),
+    locked_until TIMESTAMP,
+    created_at TIMESTAMP NOT NULL,
+    updated_at TIMESTAMP,
+    finished_at TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_refund_jobs_status ON refund_jobs (status, id);
+CREATE INDEX IF NOT EXISTS idx_refund_jobs_fundraising ON refund_jobs (fundraising_id);
@@ -0,0 +1,2 @@
+-- Очередь наступивших регулярных платежей выбирается по (is_active, next_payment_date)
+CREATE INDEX IF NOT EXISTS idx_recurring_payments_due ON recurring_payments (is_active, next_payment_date);
@@ -0,0 +1,5 @@
+-- Списания регулярных платежей записываются пожертвованиями со ссылкой на подписку;
+-- transaction_id recurring-<подписка>-<ГГГГ-ММ> не дает списать период дважды
+ALTER TABLE donations ADD COLUMN IF NOT EXISTS recurring_payment_id BIGINT;
+
+CREATE INDEX IF NOT EXISTS idx_donations_recurring_payment ON donations (recurring_payment_id, created_at);
@@ -0,0 +1,13 @@
+-- Аренда разделов подписок узлами приложения и пульс узлов, по которым разделы делятся поровну
+CREATE TABLE IF NOT EXISTS recurring_partition_leases (
+    partition_no INTEGER PRIMARY KEY,
+    owner_node VARCHAR(100),
+    lease_until TIMESTAMP,
+    updated_at TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS recurring_billing_nodes (
+    node_id VARCHAR(100) PRIMARY KEY,
+    heartbeat_at TIMESTAMP NOT NULL,
+    started_at TIMESTAMP NOT NULL
+);
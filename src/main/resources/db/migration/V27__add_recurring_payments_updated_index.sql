@@ -0,0 +1,2 @@
+-- Сверка колеса таймеров выбирает подписки, измененные с прошлой сверки
+CREATE INDEX IF NOT EXISTS idx_recurring_payments_updated ON recurring_payments (updated_at);
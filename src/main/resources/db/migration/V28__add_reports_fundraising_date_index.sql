@@ -0,0 +1,2 @@
+-- Список отчетов организации: отчеты ее кампаний выбираются и сортируются по дате одним запросом
+CREATE INDEX IF NOT EXISTS idx_reports_fundraising_date ON reports (fundraising_id, report_date);
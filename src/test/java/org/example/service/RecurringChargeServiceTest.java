@@ -0,0 +1,122 @@
+package org.example.service;
+
+import org.example.dto.PaymentResult;
+import org.example.dto.RecurringChargeItem;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class RecurringChargeServiceTest {
+
+    private static final int CHARGES = 100_000;
+    private static final long LATENCY_MS = 20;
+    private static final int MAX_IN_FLIGHT = 500;
+    private static final int RATE_PER_SECOND = 200_000;
+    private static final int WRITE_BATCH_SIZE = 500;
+
+    private RecurringChargeService service;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (service != null) {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void chargesRunInParallelWithinInFlightLimit() {
+        ConcurrencyTrackingGateway gateway = new ConcurrencyTrackingGateway(
+                new SimulatedPaymentGateway(LATENCY_MS, 0, 0.0, 0.0));
+        DonationService donationService = mock(DonationService.class);
+        Set<Long> completed = new HashSet<>();
+        doAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            completed.addAll(ids);
+            return ids.size();
+        }).when(donationService).completePayments(anyCollection());
+        service = new RecurringChargeService(gateway, donationService, new CircuitBreaker("payment-gateway", 5, 30_000),
+                MAX_IN_FLIGHT, RATE_PER_SECOND, WRITE_BATCH_SIZE);
+
+        List<RecurringChargeItem> charges = new ArrayList<>(CHARGES);
+        for (long id = 1; id <= CHARGES; id++) {
+            charges.add(new RecurringChargeItem(id, "recurring-" + id, BigDecimal.TEN, "card"));
+        }
+
+        long startedAt = System.nanoTime();
+        service.charge(charges);
+        long elapsedMs = (System.nanoTime() - startedAt) / 1_000_000;
+
+        // Последовательно это больше получаса; при MAX_IN_FLIGHT параллельных запросах - около четырех секунд
+        long idealMs = CHARGES * LATENCY_MS / MAX_IN_FLIGHT;
+        assertThat(elapsedMs).isLessThan(idealMs * 5);
+        assertThat(gateway.peak.get()).isLessThanOrEqualTo(MAX_IN_FLIGHT);
+        assertThat(gateway.peak.get()).isGreaterThan(MAX_IN_FLIGHT / 2);
+        assertThat(gateway.calls.get()).isEqualTo(CHARGES);
+        assertThat(completed).hasSize(CHARGES);
+        verify(donationService, never()).failPayments(anyMap());
+    }
+
+    @Test
+    void openBreakerStopsChargesAndLeavesThemPending() {
+        // Шлюз недоступен: каждое списание завершается временной ошибкой
+        ConcurrencyTrackingGateway gateway = new ConcurrencyTrackingGateway(
+                new SimulatedPaymentGateway(0, 0, 1.0, 0.0));
+        DonationService donationService = mock(DonationService.class);
+        CircuitBreaker circuitBreaker = new CircuitBreaker("payment-gateway", 5, 30_000);
+        service = new RecurringChargeService(gateway, donationService, circuitBreaker, 1, RATE_PER_SECOND, WRITE_BATCH_SIZE);
+
+        List<RecurringChargeItem> charges = new ArrayList<>();
+        for (long id = 1; id <= 1_000; id++) {
+            charges.add(new RecurringChargeItem(id, "recurring-" + id, BigDecimal.TEN, "card"));
+        }
+        service.charge(charges);
+
+        assertThat(gateway.calls.get()).isEqualTo(5);
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        verify(donationService, never()).completePayments(anyCollection());
+        verify(donationService, never()).failPayments(anyMap());
+    }
+
+    // Считает одновременные запросы к шлюзу и их максимум
+    private static final class ConcurrencyTrackingGateway implements PaymentGateway {
+        private final PaymentGateway delegate;
+        private final AtomicInteger current = new AtomicInteger();
+        private final AtomicInteger peak = new AtomicInteger();
+        private final AtomicInteger calls = new AtomicInteger();
+
+        ConcurrencyTrackingGateway(PaymentGateway delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public PaymentResult charge(String transactionId, BigDecimal amount, String paymentMethod) {
+            peak.accumulateAndGet(current.incrementAndGet(), Math::max);
+            calls.incrementAndGet();
+            try {
+                return delegate.charge(transactionId, amount, paymentMethod);
+            } finally {
+                current.decrementAndGet();
+            }
+        }
+
+        @Override
+        public PaymentResult refund(String transactionId, BigDecimal amount) {
+            return delegate.refund(transactionId, amount);
+        }
+    }
+}
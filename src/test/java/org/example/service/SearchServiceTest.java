@@ -0,0 +1,107 @@
+package org.example.service;
+
+import org.example.dto.SearchResponse;
+import org.example.dto.SearchResult;
+import org.example.event.CharityChangedEvent;
+import org.example.event.FundraisingChangedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+// Поиск без PostgreSQL: на H2 колонок search_vector нет, и SearchService работает на InMemorySearchIndex
+class SearchServiceTest {
+
+    private NamedParameterJdbcTemplate jdbcTemplate;
+    private SearchService searchService;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1;DATABASE_TO_LOWER=TRUE", "sa", "");
+        jdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+        execute("CREATE TABLE charities (id BIGINT PRIMARY KEY, name VARCHAR(255), description VARCHAR(2000))");
+        execute("CREATE TABLE fundraisings (id BIGINT PRIMARY KEY, title VARCHAR(255), description VARCHAR(2000), " +
+                "diagnosis VARCHAR(1000))");
+        execute("CREATE TABLE reports (id BIGINT PRIMARY KEY, fundraising_id BIGINT, title VARCHAR(255), " +
+                "description VARCHAR(2000))");
+        execute("INSERT INTO charities VALUES (1, 'Фонд помощи детям', 'Помогаем детям с тяжелыми заболеваниями')");
+        execute("INSERT INTO fundraisings VALUES (10, 'Операция на сердце', 'Сбор для Маши', 'порок сердца')");
+        execute("INSERT INTO fundraisings VALUES (11, 'Реабилитация', 'Курс после операции', NULL)");
+        execute("INSERT INTO reports VALUES (100, 10, 'Отчет об операции', 'Оплачена операция на сердце')");
+
+        searchService = new SearchService(jdbcTemplate, "auto");
+        searchService.initialize();
+    }
+
+    @Test
+    void searchesInMemoryIndexWhenDatabaseHasNoSearchVectors() {
+        SearchResponse response = searchService.search("сердце", 0, 10);
+
+        assertThat(response.getTotal()).isEqualTo(2);
+        // Совпадение в названии весит больше, чем в описании отчета
+        assertThat(response.getItems())
+                .extracting(SearchResult::getType, SearchResult::getId)
+                .containsExactly(tuple("FUNDRAISING", 10L), tuple("REPORT", 100L));
+    }
+
+    @Test
+    void matchesPrefixesAndCombinesTermsWithAnd() {
+        assertThat(searchService.search("операц", 0, 10).getItems())
+                .extracting(SearchResult::getId)
+                .containsExactlyInAnyOrder(10L, 11L, 100L);
+        assertThat(searchService.search("операция сердце", 0, 10).getItems())
+                .extracting(SearchResult::getId)
+                .containsExactlyInAnyOrder(10L, 100L);
+        assertThat(searchService.search("детям", 0, 10).getItems())
+                .extracting(SearchResult::getType, SearchResult::getId)
+                .containsExactly(tuple("CHARITY", 1L));
+    }
+
+    @Test
+    void pagesThroughHits() {
+        SearchResponse firstPage = searchService.search("операц", 0, 2);
+        SearchResponse secondPage = searchService.search("операц", 1, 2);
+        SearchResponse beyond = searchService.search("операц", 5, 2);
+
+        assertThat(firstPage.getItems()).hasSize(2);
+        assertThat(secondPage.getItems()).hasSize(1);
+        assertThat(beyond.getItems()).isEmpty();
+        assertThat(beyond.getTotal()).isEqualTo(3);
+    }
+
+    @Test
+    void reindexesFundraisingAndItsReportsOnChange() {
+        execute("UPDATE fundraisings SET title = 'Лечение почек', diagnosis = NULL WHERE id = 10");
+        execute("DELETE FROM reports WHERE id = 100");
+
+        searchService.onFundraisingChanged(new FundraisingChangedEvent(10L, 1L));
+
+        assertThat(searchService.search("сердце", 0, 10).getItems()).isEmpty();
+        assertThat(searchService.search("почек", 0, 10).getItems())
+                .extracting(SearchResult::getId)
+                .containsExactly(10L);
+    }
+
+    @Test
+    void reindexesCharityOnChange() {
+        execute("UPDATE charities SET name = 'Фонд защиты животных' WHERE id = 1");
+
+        searchService.onCharityChanged(new CharityChangedEvent(1L));
+
+        assertThat(searchService.search("животных", 0, 10).getItems())
+                .extracting(SearchResult::getId)
+                .containsExactly(1L);
+        assertThat(searchService.search("фонд помощи", 0, 10).getItems()).isEmpty();
+    }
+
+    private void execute(String sql) {
+        jdbcTemplate.update(sql, Map.of());
+    }
+}